@@ -0,0 +1,82 @@
+import tokenizer.SourceBuffer;
+import tokenizer.TokenException;
+import tokenizer.Tokenizer;
+
+import parser.IncrementalParser;
+import parser.Parser;
+import parser.ParseException;
+import parser.ProgramParser;
+import codegen.AssemblyGenerator;
+import codegen.CompileException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+// Development check for the incremental parser. Parses a source file, brings
+// it up to date with each edited version of it in turn, and checks that the
+// result compiles to the same object code as a full parse of the last one.
+public class EditCheck
+{
+    public static void main( String[] args )
+    {
+        if (args.length < 2)
+        {
+            System.out.println("Usage: java EditCheck <input filename> <edited filename>...");
+            System.exit(1);
+        }
+
+        String editedFile = args[args.length - 1];
+
+        try
+        {
+            IncrementalParser edited = new IncrementalParser(readSource(args[0]));
+            edited.parseProgram();
+
+            for (int i = 1; i < args.length; i++)
+            {
+                edited.editTo(readSource(args[i]));
+            }
+
+            Parser full = new Parser(new Tokenizer(SourceBuffer.map(editedFile)));
+            full.parseProgram();
+
+            byte[] editedCode = objectCode(edited);
+            byte[] fullCode = objectCode(full);
+
+            if (editedCode == null || fullCode == null)
+            {
+                System.out.println("Edited program could not be encoded to compare with a full parse.");
+                System.exit(1);
+            }
+            else if (!Arrays.equals(editedCode, fullCode))
+            {
+                System.out.println("The edited program does not compile the same as a full parse of " + editedFile);
+                System.exit(1);
+            }
+
+            System.out.println("Edited program compiles the same as a full parse.");
+        }
+        catch (IOException | TokenException | ParseException | CompileException exception)
+        {
+            exception.printStackTrace();
+            System.exit(1);
+        }
+
+        System.exit(0);
+    }
+
+    private static String readSource(String filename) throws IOException
+    {
+        return new String(Files.readAllBytes(Paths.get(filename)), StandardCharsets.UTF_8);
+    }
+
+    // the object code of a parsed program, or null if it cannot be encoded
+    private static byte[] objectCode(ProgramParser parser) throws CompileException
+    {
+        AssemblyGenerator generator = new AssemblyGenerator(parser);
+        return generator.encodeObject(generator.generateCode());
+    }
+}
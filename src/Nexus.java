@@ -1,14 +1,26 @@
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import tokenizer.PackedTokenBuffer;
+import tokenizer.PackedTokenStream;
+import tokenizer.ParallelTokenizer;
+import tokenizer.SourceBuffer;
 import tokenizer.TokenException;
 import tokenizer.Tokenizer;
 
+import parser.IncrementalParser;
+import parser.ParallelParser;
+import parser.PipelinedParser;
 import parser.Parser;
 import parser.ParseException;
+import parser.ProgramParser;
+import parser.Statement;
 import codegen.CompileException;
 import codegen.Compiler;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Nexus
 {
@@ -17,11 +29,16 @@ public class Nexus
         String inFilename;
         String outFilename;
         boolean verbose = false;
+        boolean parallel = false;
+        boolean streaming = false;
+        boolean useNasm = false;
+        boolean crossCheck = false;
+        boolean keepIntermediates = false;
+        List<String> editedFiles = new ArrayList<String>();
 
         if (args.length < 2)
         {
-            System.out.println("Usage: nexc <options> <input filename> <target filename>");
-            System.exit(1);
+            printUsage();
         }
 
         if (args.length == 2)
@@ -32,11 +49,26 @@ public class Nexus
 
         int i = 0;
 
-        while (args[i].charAt(0) == '-')
+        while (i < args.length && args[i].charAt(0) == '-')
         {
             switch (args[i].charAt(1))
             {
-                case 'v': verbose = true;
+                case 'v': verbose = true; break;
+                case 'p': parallel = true; break;
+                case 's': streaming = true; break;
+                case 'n': useNasm = true; break;
+                case 'c': crossCheck = true; break;
+                case 'k': keepIntermediates = true; break;
+                case 'e':
+                if (i + 1 >= args.length)
+                {
+                    printUsage();
+                }
+
+                i++;
+                editedFiles.add(args[i]);
+                break;
+
                 default: break;
             }
 
@@ -45,46 +77,101 @@ public class Nexus
 
         if (i + 1 >= args.length)
         {
-            System.out.println("Usage: nexc <options> <input filename> <target filename>");
-            System.exit(1);
+            printUsage();
         }
 
         inFilename = args[i];
         outFilename = args[i + 1];
 
+        // with edits, the input file is parsed and then edited into each
+        // edited file in turn, and the last of them is what is compiled. An
+        // edited program is parsed as a whole before it is compiled
+        if (!editedFiles.isEmpty())
+        {
+            streaming = false;
+        }
+
         Tokenizer tokenizer;
-        Parser parser;
+        ProgramParser parser;
         Compiler codeGenerator;
 
         try 
         {
-            byte[] bytes = Files.readAllBytes(Paths.get(inFilename));
-            String content = new String(bytes);
-            
-            tokenizer = new Tokenizer(content);
+            SourceBuffer source = SourceBuffer.map(inFilename);
+            tokenizer = new Tokenizer(source);
 
             try
             {
-                tokenizer.tokenize();
+                // tokens are only stored when they are tokenized in parallel or
+                // need to be printed, otherwise the parser pulls them straight
+                // from the tokenizer. When streaming, statements are compiled
+                // as they are parsed, so nothing is printed. Streaming in
+                // parallel runs tokenizing, parsing and code generation on
+                // threads of their own
+                if (!editedFiles.isEmpty())
+                {
+                    parser = new IncrementalParser(readSource(inFilename));
+                }
+                else if (streaming && parallel)
+                {
+                    parser = new PipelinedParser(tokenizer);
+                }
+                else if (streaming)
+                {
+                    parser = new Parser(tokenizer);
+                }
+                else if (parallel)
+                {
+                    ParallelTokenizer parallelTokenizer = new ParallelTokenizer(source);
+                    parallelTokenizer.tokenize();
+
+                    if (verbose)
+                    {
+                        System.out.println("Program was successfuly tokenized.");
+                        System.out.println("Tokens in program: ");
+                        parallelTokenizer.printTokenList();
+                        System.out.println();
+                    }
 
-                if (verbose)
+                    parser = new ParallelParser(parallelTokenizer.getTokens());
+                }
+                else if (verbose)
                 {
+                    PackedTokenBuffer tokens = tokenizer.tokenizePacked();
+
                     System.out.println("Program was successfuly tokenized.");
                     System.out.println("Tokens in program: ");
-                    tokenizer.printTokenList();
+                    tokens.printTokens();
                     System.out.println();
+
+                    parser = new Parser(new PackedTokenStream(tokens));
+                }
+                else
+                {
+                    parser = new Parser(tokenizer);
                 }
                 
                 try
                 {
-                    parser = new Parser(tokenizer.getTokens());
-                    parser.parseProgram();
+                    if (!editedFiles.isEmpty())
+                    {
+                        applyEdits((IncrementalParser) parser, editedFiles, verbose);
+                    }
+                    else if (!streaming)
+                    {
+                        parser.parseProgram();
+                    }
 
-                    if (verbose)
+                    if (verbose && !streaming)
                     {
                         System.out.println("Program was successfully parsed.");
                         System.out.println("Statements in program: ");
-                        parser.printStatements();
+
+                        for (Statement statement : parser.getProgram())
+                        {
+                            statement.printStatement();
+                        }
+
                         System.out.println();
 
                         System.out.println("Parser symbol table:");
@@ -95,7 +182,18 @@ public class Nexus
                     try
                     {
                         codeGenerator = new Compiler(parser);
-                        codeGenerator.compile(outFilename, verbose);
+                        codeGenerator.setUseNasm(useNasm);
+                        codeGenerator.setCrossCheck(crossCheck);
+                        codeGenerator.setKeepIntermediates(keepIntermediates);
+
+                        if (streaming)
+                        {
+                            codeGenerator.compileStreaming(outFilename, verbose);
+                        }
+                        else
+                        {
+                            codeGenerator.compile(outFilename, verbose);
+                        }
                     }
                     catch (CompileException exception)
                     {
@@ -123,4 +221,49 @@ public class Nexus
 
         System.exit(0);
     }
+
+    // reads a whole source file as text
+    private static String readSource(String filename) throws IOException
+    {
+        return new String(Files.readAllBytes(Paths.get(filename)), StandardCharsets.UTF_8);
+    }
+
+    // parses the source, then brings the program up to date with each edited
+    // version of it in turn, re-parsing only the statements that changed
+    private static void applyEdits(IncrementalParser parser, List<String> editedFiles, boolean verbose) throws IOException, ParseException, TokenException
+    {
+        parser.parseProgram();
+
+        for (String editedFile : editedFiles)
+        {
+            parser.editTo(readSource(editedFile));
+
+            if (verbose)
+            {
+                System.out.println("Applied edits from " + editedFile);
+            }
+        }
+
+        if (verbose)
+        {
+            System.out.println("Compiling the program as edited into " + editedFiles.get(editedFiles.size() - 1));
+            System.out.println();
+        }
+    }
+
+    private static void printUsage()
+    {
+        System.out.println("Usage: nexc <options> <input filename> <target filename>");
+        System.out.println("Options:");
+        System.out.println("  -v         print the tokens, statements and symbol table, and each step");
+        System.out.println("  -p         tokenize and parse in parallel");
+        System.out.println("  -s         generate code while the program is parsed, assembled by NASM");
+        System.out.println("  -n         assemble with NASM instead of encoding the object directly");
+        System.out.println("  -c         also assemble with NASM and check it matches the encoded object");
+        System.out.println("  -k         keep the assembly and object files next to the target");
+        System.out.println("  -e <file>  parse the input file, then edit it into <file>. Can be given");
+        System.out.println("             more than once, the edits are applied in order. The last");
+        System.out.println("             <file> is what is compiled, not the input file");
+        System.exit(1);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,140 @@
+package codegen;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+// Writes assembly text into a byte buffer that is drained to a channel
+// whenever it fills, so the text is never built up in Strings. Text is
+// written as UTF-8. Errors writing the channel are thrown as
+// UncheckedIOException, since the printer is not set up to handle
+// IOException at every line.
+public class AsmEmitter
+{
+    public static final int BUFFER_SIZE = 1 << 16;
+
+    private WritableByteChannel channel;
+    private ByteBuffer buffer;
+
+    public AsmEmitter(WritableByteChannel inChannel)
+    {
+        channel = inChannel;
+        buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    public AsmEmitter emit(String text)
+    {
+        int length = text.length();
+
+        for (int i = 0; i < length; i++)
+        {
+            char c = text.charAt(i);
+
+            if (c >= 0x80)
+            {
+                // text that is not all ASCII is encoded in one go
+                putBytes(text.substring(i).getBytes(StandardCharsets.UTF_8));
+                return this;
+            }
+
+            if (!buffer.hasRemaining())
+            {
+                drain();
+            }
+
+            buffer.put((byte) c);
+        }
+
+        return this;
+    }
+
+    public AsmEmitter emit(char c)
+    {
+        if (c >= 0x80)
+        {
+            return emit(String.valueOf(c));
+        }
+
+        if (!buffer.hasRemaining())
+        {
+            drain();
+        }
+
+        buffer.put((byte) c);
+        return this;
+    }
+
+    // writes a number in decimal without making a String of it
+    public AsmEmitter emit(int n)
+    {
+        if (n < 0)
+        {
+            if (n == Integer.MIN_VALUE)
+            {
+                return emit(Integer.toString(n));
+            }
+
+            emit('-');
+            n = -n;
+        }
+
+        int divisor = 1;
+
+        while (n / divisor >= 10)
+        {
+            divisor *= 10;
+        }
+
+        while (divisor > 0)
+        {
+            emit((char) ('0' + n / divisor % 10));
+            divisor /= 10;
+        }
+
+        return this;
+    }
+
+    // writes everything emitted so far to the channel
+    public void flush()
+    {
+        drain();
+    }
+
+    private void putBytes(byte[] bytes)
+    {
+        int pos = 0;
+
+        while (pos < bytes.length)
+        {
+            if (!buffer.hasRemaining())
+            {
+                drain();
+            }
+
+            int count = Math.min(buffer.remaining(), bytes.length - pos);
+            buffer.put(bytes, pos, count);
+            pos += count;
+        }
+    }
+
+    private void drain()
+    {
+        buffer.flip();
+
+        try
+        {
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+        }
+        catch (IOException exception)
+        {
+            throw new UncheckedIOException(exception);
+        }
+
+        buffer.clear();
+    }
+}
@@ -1,11 +1,20 @@
 package codegen;
 
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Iterator;
 
-import parser.Parser;
+import parser.ParseException;
+import parser.ProgramParser;
 import parser.Statement;
 import parser.StringDeclaration;
 import parser.StringReassignment;
@@ -13,745 +22,753 @@ import parser.NumDeclaration;
 import parser.CharDeclaration;
 import parser.ExitStatement;
 import parser.PrintStatement;
+import parser.ExpressionArena;
 import parser.NumExpression;
 import parser.StringExpression;
-import parser.NumTerm;
-import parser.NumFactor;
 import parser.NumReassignment;
 import parser.CharReassignment;
+import tokenizer.DataType;
 import tokenizer.Token;
+import tokenizer.TokenException;
 import tokenizer.TokenType;
-import tokenizer.Tokenizer;
 
+// Generates the code of a resolved program. Every identifier has been bound
+// to its variable's frame offset by the Resolver, so no variable is looked
+// up here. The code is made as a list of instructions, and is only written
+// out as NASM source by a NasmPrinter once it is done
 public class AssemblyGenerator implements StatementVisitor {
-    private Parser parser;
-    private TableStack tableStack;
+    private ProgramParser parser;
+
+    // the code generated so far
+    private ArrayList<Instruction> code;
 
-    static final String STR_SIZE_MD = "strSize";
     static final String PTR_DATA = "pd";
     static final String BUFFER = "buf";
     static final String FLOAT_NEG_MASK = "nmask";
+    static final String LITERAL_LABEL = "lit";
     static final int BUFFER_SIZE = 1024;
 
-    static final int INT_SIZE = 4;
-    static final int FLOAT_SIZE = 4;
-    static final int CHAR_SIZE = 1;
-    static final int PTR_SIZE = 4;
-
-    public AssemblyGenerator(Parser inParser)
+    static final Label START = new Label("_start");
+    private static final Label NEG_MASK = new Label(FLOAT_NEG_MASK);
+    private static final Memory STACK_TOP = new Memory(Register.ESP);
+    private static final Immediate STACK_SLOT = new Immediate(4);
+    private static final Immediate SYSCALL = new Immediate(0x80, "0x80");
+    private static final Immediate SYS_EXIT = new Immediate(1);
+    private static final Immediate SYS_WRITE = new Immediate(4);
+    private static final Immediate STDOUT = new Immediate(1);
+
+    private static final byte VISIT_BEFORE = 0;
+    private static final byte VISIT_BETWEEN = 1;
+    private static final byte VISIT_AFTER = 2;
+    private static final byte VISIT_MEMO = 3;
+
+    // the code generated for shared constant subtrees of one arena, by node
+    // and mode, and the register each mode generated them into
+    private ExpressionArena memoArena;
+    private HashMap<Long, List<Instruction>> memo;
+    private Register[] memoRegisters;
+
+    public AssemblyGenerator(ProgramParser inParser)
     {
         parser = inParser;
-        tableStack = new TableStack();
+        code = new ArrayList<Instruction>();
+        memoArena = null;
+        memo = new HashMap<Long, List<Instruction>>();
+        memoRegisters = new Register[2];
     }
 
-    public boolean generateProgram(String outputFile) throws CompileException
+    // resolves the parsed program and generates the code of its text section
+    public List<Instruction> generateCode() throws CompileException
     {
-        try (FileWriter writer = new FileWriter(outputFile)) 
-        {   
-            tableStack.push(new SymbolTable());
-            
-            List<Statement> program = parser.getProgram();
-            writer.write( generateDataSegment() );
-            writer.write("\n");
-            writer.write( generatePreamble() );
+        List<Statement> program = parser.getProgram();
 
-            // write assembly code
-            int i = 0;
+        new Resolver().resolveProgram(program);
 
-            while (i < program.size())
-            {
-                writer.write( program.get(i).accept(this) );
-                i++;
-            }
+        code = new ArrayList<Instruction>();
+        generatePreamble();
 
-            return true;
-        } 
-        catch (IOException e) 
-        {
-            e.printStackTrace();
-        }
-        catch (CompileException e)
+        int i = 0;
+
+        while (i < program.size())
         {
-            throw e;
+            program.get(i).accept(this);
+            i++;
         }
 
-        return false;
+        return code;
     }
 
-    public String visit(NumDeclaration stmt) throws CompileException 
+    public boolean generateProgram(String outputFile) throws CompileException
     {
-        String a = "";
-        String identifier = stmt.getIdentifier().getValue();
+        return writeAssembly(generateCode(), outputFile);
+    }
 
-        if (stmt.getExpression().isFloat())
+    // writes generated code with the data section as NASM source
+    public boolean writeAssembly(List<Instruction> text, String outputFile)
+    {
+        try (FileChannel channel = openOutput(outputFile))
         {
-            a += numExpressionAssembly( stmt.getExpression(), "xmm0", true );
-            a += "\tsub esp, " + FLOAT_SIZE + "\n";
-            a += "\tmovss [esp], xmm0\n";
+            NasmPrinter printer = new NasmPrinter(new AsmEmitter(channel));
 
-            if (!tableStack.identifierInUse(identifier))
-            {
-                tableStack.peek().addIdentifier(Tokenizer.TYPE_FLOAT, identifier, FLOAT_SIZE);
-            }
-            else
-            {
-                throw new CompileException("Identifier " + identifier + " already in use");
-            }
+            printer.printDataSection(parser.getLiteralPool(), parser.getSymbolTable().getAllDataSize());
+            printer.printBlankLine();
+            printer.printTextHeader(START);
+            printer.print(text);
+            printer.flush();
+            return true;
         }
-        else
+        catch (IOException | UncheckedIOException e)
         {
-            a += numExpressionAssembly( stmt.getExpression(), "ebx", false );
-            a += "\tsub esp, " + INT_SIZE + "\n";
-            a += "\tmov [esp], ebx\n";
-
-            if (!tableStack.identifierInUse(identifier))
-            {
-                tableStack.peek().addIdentifier(Tokenizer.TYPE_INT, identifier, INT_SIZE);
-            }
-            else
-            {
-                throw new CompileException("Identifier " + identifier + " already in use");
-            }
+            e.printStackTrace();
         }
 
-        return a;
+        return false;
     }
 
-    public String visit(CharDeclaration stmt) throws CompileException 
+    // encodes generated code with the data section into the bytes of an
+    // object file. Returns null if the code cannot be encoded, so it can
+    // still be assembled by NASM
+    public byte[] encodeObject(List<Instruction> text)
     {
-        String a = "";
-        String identifier = stmt.getIdentifier().getValue();
-
-        a += numExpressionAssembly( stmt.getExpression(), "ebx", false );
-        a += "\tsub esp, " + CHAR_SIZE + "\n";
-        a += "\tmov [esp], bl\n";
-
-        if (!tableStack.identifierInUse(identifier))
+        try
         {
-            tableStack.peek().addIdentifier(Tokenizer.TYPE_CHAR, identifier, CHAR_SIZE);
+            X86Encoder encoder = new X86Encoder();
+            encoder.encode(text);
+
+            DataSection data = new DataSection(parser.getLiteralPool(), parser.getSymbolTable().getAllDataSize());
+            return new ElfObject(encoder, data, START).toBytes();
         }
-        else
+        catch (CompileException e)
         {
-            throw new CompileException("Identifier " + identifier + " already in use");
+            return null;
         }
-
-        return a;
     }
 
-    public String visit(StringDeclaration stmt) throws CompileException
+    // generates the program while it is parsed. Every statement is written
+    // as soon as it is parsed and resolved and is then dropped, and the data
+    // section, which needs all the literals, goes at the end of the file. If
+    // the program turns out to be invalid, the partly written file is deleted
+    public boolean generateStreaming(String outputFile) throws CompileException, ParseException, TokenException
     {
-        String a = "";
-        String identifier = stmt.getIdentifier().getValue();
+        Resolver resolver = new Resolver();
+        boolean done = false;
+
+        try (FileChannel channel = openOutput(outputFile))
+        {
+            NasmPrinter printer = new NasmPrinter(new AsmEmitter(channel));
+
+            code = new ArrayList<Instruction>();
+            generatePreamble();
+            printer.printTextHeader(START);
+            printer.print(code);
 
-        a += strExpressionAssembly( stmt.getExpression(), "ebx");
-        a += "\tsub esp, " + PTR_SIZE + "\n";
-        a += "\tmov [esp], ebx\n";
+            Statement statement;
 
-        if (!tableStack.identifierInUse(identifier))
+            while ((statement = parser.streamStatement()) != null)
+            {
+                resolver.resolveStatement(statement);
+                code.clear();
+                statement.accept(this);
+                printer.print(code);
+            }
+
+            printer.printBlankLine();
+            printer.printDataSection(parser.getLiteralPool(), parser.getSymbolTable().getAllDataSize());
+            printer.flush();
+            done = true;
+            return true;
+        }
+        catch (IOException | UncheckedIOException e)
         {
-            tableStack.peek().addIdentifier(Tokenizer.TYPE_STRING, identifier, PTR_SIZE);
-            updateStringLength(identifier, stmt.getExpression());
+            e.printStackTrace();
         }
-        else
+        finally
         {
-            throw new CompileException("Identifier " + identifier + " already in use");
+            parser.stopStreaming();
+
+            if (!done)
+            {
+                new File(outputFile).delete();
+            }
         }
 
-        return a;
+        return false;
     }
 
-    public String visit(StringReassignment stmt) throws CompileException
+    public void visit(NumDeclaration stmt) throws CompileException 
     {
-        String a = "";
-        StringExpression expr = stmt.getExpression();
-        String identifier = stmt.getIdentifier().getValue();
-        Integer offset = tableStack.getOffset(identifier);
+        numValueAssembly(stmt.getExpression(), stmt.getDataType());
+        emit(Opcode.SUB, Register.ESP, new Immediate(stmt.getDataType().getSize()));
+        storeNumber(STACK_TOP, stmt.getDataType());
+    }
 
-        if (offset != -1)
-        {
-            a += strExpressionAssembly(expr, "ebx");
-            a += "\tmov [ebp + " + offset.toString() + "], ebx\n";
+    public void visit(CharDeclaration stmt) throws CompileException 
+    {
+        numExpressionAssembly( stmt.getExpression(), Register.EBX, false );
+        emit(Opcode.SUB, Register.ESP, new Immediate(DataType.CHAR.getSize()));
+        emit(Opcode.MOV, STACK_TOP, Register.BL);
+    }
 
-            updateStringLength(stmt.getIdentifier().getValue(), expr);
-            
-            return a;
-        }
+    public void visit(StringDeclaration stmt) throws CompileException
+    {
+        strExpressionAssembly( stmt.getExpression(), Register.EBX);
+        emit(Opcode.SUB, Register.ESP, new Immediate(DataType.STRING.getSize()));
+        emit(Opcode.MOV, STACK_TOP, Register.EBX);
+    }
 
-        throw new CompileException("Unknown identifier: " + identifier);
+    public void visit(StringReassignment stmt) throws CompileException
+    {
+        strExpressionAssembly(stmt.getExpression(), Register.EBX);
+        emit(Opcode.MOV, frame(stmt.getOffset()), Register.EBX);
     }
 
-    public String visit(NumReassignment stmt) throws CompileException
+    public void visit(NumReassignment stmt) throws CompileException
     {
-        String a = "";
-        String identifier = stmt.getIdentifier().getValue();
-        Integer offset = tableStack.getOffset(identifier);
+        numValueAssembly(stmt.getExpression(), stmt.getVariableType());
+        storeNumber(frame(stmt.getOffset()), stmt.getVariableType());
+    }
 
-        if (offset != -1)
+    // generates a number for a variable of the given type, into xmm0 for a
+    // float, converting an integer expression, or else into ebx
+    private void numValueAssembly(NumExpression expr, DataType type) throws CompileException
+    {
+        if (type == DataType.FLOAT && expr.isFloat())
         {
-            if (stmt.getExpression().isFloat())
-            {
-                a += numExpressionAssembly(stmt.getExpression(), "xmm0", true);
-                a += a += "\tmovss [ebp + " + offset.toString() + "], xmm0\n";
-            }
-            else
-            {
-                a += numExpressionAssembly(stmt.getExpression(), "ebx", false);
-                a += "\tmov [ebp + " + offset.toString() + "], ebx\n";
-            }
-
-            return a;
+            numExpressionAssembly(expr, Register.XMM0, true);
+            return;
         }
 
-        throw new CompileException("Unknown identifier: " + identifier);
+        numExpressionAssembly(expr, Register.EBX, false);
+
+        if (type == DataType.FLOAT)
+        {
+            emit(Opcode.CVTSI2SS, Register.XMM0, Register.EBX);
+        }
     }
 
-    public String visit(CharReassignment stmt) throws CompileException
+    // stores the number numValueAssembly generated for a variable of the
+    // given type
+    private void storeNumber(Operand destination, DataType type)
     {
-        String a = "";
-        String identifier = stmt.getIdentifier().getValue();
-        Integer offset = tableStack.getOffset(identifier);
-
-        if (offset != -1)
+        if (type == DataType.FLOAT)
         {
-            a += numExpressionAssembly( stmt.getExpression(), "ebx", false );
-            a += "\tmov [ebp + " + offset.toString() + "], bl\n";
-            return a;
+            emit(Opcode.MOVSS, destination, Register.XMM0);
         }
+        else
+        {
+            emit(Opcode.MOV, destination, Register.EBX);
+        }
+    }
 
-        throw new CompileException("Unknown identifier: " + identifier);
+    public void visit(CharReassignment stmt) throws CompileException
+    {
+        numExpressionAssembly( stmt.getExpression(), Register.EBX, false );
+        emit(Opcode.MOV, frame(stmt.getOffset()), Register.BL);
     }
 
-    public String visit(PrintStatement stmt) throws CompileException 
+    public void visit(PrintStatement stmt) throws CompileException 
     {
         StringExpression expr = stmt.getExpression();
         Token exprToken = expr.getToken();
-        String dataLen;
-
-        String a = "";
 
-        a += "\tmov eax, 4\n";
-        a += "\tmov ebx, 1\n";
+        emit(Opcode.MOV, Register.EAX, SYS_WRITE);
+        emit(Opcode.MOV, Register.EBX, STDOUT);
 
         switch (exprToken.getType())
         {
             case LITERAL_STR:
-            String str = exprToken.getValue();
-            dataLen = Integer.toString(str.length() + 1);
-
-            a += "\tmov edx, " + dataLen + "\n";
-            a += handleStringLiteral(expr, "ecx");
-            a += "\tint 0x80\n";
+            emit(Opcode.MOV, Register.EDX, new Immediate(exprToken.getValue().length() + 1));
+            handleStringLiteral(expr, Register.ECX);
+            emit(Opcode.INT, SYSCALL);
             break;
 
             case IDENTIFIER:
-            dataLen = tableStack.getVarInfo(exprToken.getValue()).getMetaData(STR_SIZE_MD);
-
-            a += "\tmov edx, " + dataLen + "\n";
-            a += handleIdentifier(expr, "ecx");
-            a += "\tint 0x80\n";
+            emit(Opcode.MOV, Register.EDX, new Immediate(expr.getStrSize()));
+            handleIdentifier(expr, Register.ECX);
+            emit(Opcode.INT, SYSCALL);
             break;
 
             default:
             throw new CompileException("'print' not supported for token: '" + exprToken.getValue() + "'");
         }
-        
-        return a;
     }
 
-    public String visit(ExitStatement stmt) throws CompileException 
+    public void visit(ExitStatement stmt) throws CompileException 
     {
-        String a = "";
+        emit(Opcode.MOV, Register.EAX, SYS_EXIT);
+        numExpressionAssembly(stmt.getExpression(), Register.EBX, false);
+        emit(Opcode.INT, SYSCALL);
+    }
 
-        a += "\tmov eax, 1\n";
-        a += numExpressionAssembly(stmt.getExpression(), "ebx", false);
-        a += "\tint 0x80\n\n";
+    private static FileChannel openOutput(String outputFile) throws IOException
+    {
+        return FileChannel.open(Paths.get(outputFile), StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
 
-        return a;
+    private void emit(Opcode opcode)
+    {
+        code.add(new Instruction(opcode));
     }
 
-    private void updateStringLength(String identifier, StringExpression expr) throws CompileException
+    private void emit(Opcode opcode, Operand operand)
     {
-        switch (expr.getToken().getType())
-        {
-            case LITERAL_STR:
-            tableStack.getVarInfo(identifier).updateMetaData(STR_SIZE_MD, Integer.toString(expr.getToken().getValue().length()));
-            break;
+        code.add(new Instruction(opcode, operand));
+    }
 
-            case IDENTIFIER:
-            tableStack.getVarInfo(identifier).updateMetaData(STR_SIZE_MD, tableStack.getVarInfo(identifier).getMetaData(STR_SIZE_MD));
-            break;
+    private void emit(Opcode opcode, Operand destination, Operand source)
+    {
+        code.add(new Instruction(opcode, destination, source));
+    }
 
-            default:
-            throw new CompileException("Could not update string length of " + identifier);
-        }
+    // the code generated since the given position
+    private List<Instruction> copyCode(int start)
+    {
+        return new ArrayList<Instruction>(code.subList(start, code.size()));
     }
 
-    // Loads the memory location of a string literal into a given register
-    private String handleStringLiteral(StringExpression expr, String register) throws CompileException 
+    // the variable at the given offset in the stack frame
+    private static Memory frame(int offset)
     {
-        String a = "";
-        String str = expr.getToken().getValue();
-        String type = parser.getLitTable().getLiteralType(str);
-        String label = parser.getLitTable().getLiteralLabel(str);
+        return new Memory(Register.EBP, offset);
+    }
 
-        if (!type.equals(Tokenizer.TYPE_STRING) || label == null)
-        {
-            throw new CompileException("Could not resolve string literal: " + str);
-        }
+    private static Label literalLabel(int id)
+    {
+        return new Label(LITERAL_LABEL + id);
+    }
 
-        a += "\tlea " + register + ", " + label + "\n";
-    
-        return a;
+    // Loads the memory location of a string literal into a given register
+    private void handleStringLiteral(StringExpression expr, Register register)
+    {
+        emit(Opcode.LEA, register, literalLabel(expr.getLiteralId()));
     }  
     
     // Finds the memory location of the string pointed to by an identifier, and puts the result in the given register 
-    private String handleIdentifier(StringExpression expr, String register) throws CompileException 
+    private void handleIdentifier(StringExpression expr, Register register)
     {
-        Integer offset = tableStack.getOffset(expr.getToken().getValue());
-
-        if (offset != -1)
-        {
-            return "\tmov " + register + ", [ebp + " + offset.toString() + "]\n";
-        }
-
-        throw new CompileException("Unknown identifier: " + expr.getToken().getValue());
+        emit(Opcode.MOV, register, frame(expr.getOffset()));
     }
     
     // Handles a string expression, puts the memory location of the resulting string into the given register
-    private String strExpressionAssembly(StringExpression expr, String register) throws CompileException 
+    private void strExpressionAssembly(StringExpression expr, Register register) throws CompileException 
     {
-        String a = "";
         switch (expr.getToken().getType()) 
         {
             case LITERAL_STR:
-            a += handleStringLiteral(expr, register);
+            handleStringLiteral(expr, register);
             break;
 
             case IDENTIFIER:
-            a += handleIdentifier(expr, register);
+            handleIdentifier(expr, register);
             break;
 
             default:
             throw new CompileException("Could not compile this string expression");
         }
-
-        return a;
     }    
 
-    private String numExpressionAssembly(NumExpression expr, String register, boolean floatMode) throws CompileException
+    // generates an expression without recursing, so that expressions of any
+    // size and nesting fit in the Java stack. Nodes are visited from a stack,
+    // binary ones once before their left operand, once between their operands
+    // and once after their right one. The code of a constant subtree used more
+    // than once is saved when it is first generated and copied after that
+    private void numExpressionAssembly(NumExpression expr, Register register, boolean floatMode) throws CompileException
     {
-        String a = "";
+        ExpressionArena arena = expr.getArena();
+        int[] nodes = new int[16];
+        byte[] visits = new byte[16];
+        int[] marks = new int[16];
+        int depth = 1;
 
-        // base case: single int term, simply put it into the register
-        if (expr.getTerm() != null)
-        {
-            return numTermAssembly(expr.getTerm(), register, floatMode);
-        }
-
-        if (floatMode)
-        {
-            // evaluate left hand side, put into register
-            a += numExpressionAssembly(expr.getLeft(), register, floatMode);
+        useMemo(arena, register, floatMode);
 
-            // preserve xmm5 and register
-            a += "\tsub esp, 4\n";
-            a += "\tmovss [esp], xmm5\n";
-            a += "\tsub esp, 4\n";
-            a += "\tmovss [esp], " + register + "\n";
+        nodes[0] = expr.getRoot();
+        visits[0] = VISIT_BEFORE;
 
-            // evaluate right hand side, put into register
-            a += numExpressionAssembly(expr.getRight(), register, floatMode);
-
-            // get the left hand side off the stack, and into xmm5
-            a += "\tmovss xmm5, [esp]\n";
-            a += "\tadd esp, 4\n";
+        while (depth > 0)
+        {
+            depth--;
+            int node = nodes[depth];
+            byte visit = visits[depth];
 
-            // perform operation with xmm5 and register
-            if (expr.getOperator().getType() == TokenType.PLUS)
+            if (depth + 3 >= nodes.length)
             {
-                a += "\taddss xmm5, " + register + "\n";
+                nodes = Arrays.copyOf(nodes, nodes.length * 2);
+                visits = Arrays.copyOf(visits, visits.length * 2);
+                marks = Arrays.copyOf(marks, marks.length * 2);
             }
-            else if (expr.getOperator().getType() == TokenType.MINUS)
+
+            if (visit == VISIT_MEMO)
             {
-                a += "\tsubss xmm5, " + register + "\n";
+                memo.put(getMemoKey(node, floatMode), copyCode(marks[depth]));
+                continue;
             }
 
-            // move result into register
-            a += "\tmovss " + register + ", xmm5\n";
-
-            // restore original xmm5
-            a += "\tmovss xmm5, [esp]\n";
-            a += "\tadd esp, 4\n";
-        }
-        else
-        {
-            // Evaluate left hand side, put into register
-            a += numExpressionAssembly(expr.getLeft(), register, floatMode);
-
-            // Preserve ecx and register
-            a += "\tpush ecx\n";
-            a += "\tpush " + register + "\n";
-
-            // Evalute right hand side, put into register
-            a += numExpressionAssembly(expr.getRight(), register, floatMode);
+            if (visit == VISIT_BEFORE && arena.isShared(node) && arena.isConstant(node) &&
+                arena.getKind(node) != ExpressionArena.LEAF)
+            {
+                List<Instruction> saved = memo.get(getMemoKey(node, floatMode));
 
-            // Get left hand side off of the stack
-            a += "\tpop ecx\n";
+                if (saved != null)
+                {
+                    code.addAll(saved);
+                    continue;
+                }
 
-            // Perform operation
-            if (expr.getOperator().getType() == TokenType.PLUS)
-            {
-                a += "\tadd ecx, " + register + "\n";
+                // the code is saved once everything under the node is done
+                nodes[depth] = node;
+                visits[depth] = VISIT_MEMO;
+                marks[depth] = code.size();
+                depth++;
             }
-            else if (expr.getOperator().getType() == TokenType.MINUS)
+
+            switch (arena.getKind(node))
             {
-                a += "\tsub ecx, " + register + "\n";
-            }
+                case ExpressionArena.BINARY:
+                if (visit == VISIT_BEFORE)
+                {
+                    // evaluate left hand side, put into register
+                    nodes[depth] = node;
+                    visits[depth] = VISIT_BETWEEN;
+                    nodes[depth + 1] = arena.getLeft(node);
+                    visits[depth + 1] = VISIT_BEFORE;
+                    depth += 2;
+                }
+                else if (visit == VISIT_BETWEEN)
+                {
+                    binaryPushAssembly(arena, node, register, floatMode);
+
+                    // evaluate right hand side, put into register
+                    nodes[depth] = node;
+                    visits[depth] = VISIT_AFTER;
+                    nodes[depth + 1] = arena.getRight(node);
+                    visits[depth + 1] = VISIT_BEFORE;
+                    depth += 2;
+                }
+                else
+                {
+                    binaryOperationAssembly(arena, node, register, floatMode);
+                }
+                break;
 
-            // Move result into register
-            a += "\tmov " + register + ", ecx\n";
+                case ExpressionArena.NEGATE:
+                if (visit == VISIT_BEFORE)
+                {
+                    nodes[depth] = node;
+                    visits[depth] = VISIT_AFTER;
+                    nodes[depth + 1] = arena.getOperand(node);
+                    visits[depth + 1] = VISIT_BEFORE;
+                    depth += 2;
+                }
+                else if (floatMode) 
+                {
+                    emit(Opcode.MOVSS, Register.XMM7, new Memory(NEG_MASK));
+                    emit(Opcode.XORPS, register, Register.XMM7);
+                } 
+                else 
+                {
+                    emit(Opcode.NEG, register);
+                }
+                break;
 
-            // Restore original ecx
-            a += "\tpop ecx\n";
-        }
+                case ExpressionArena.GROUP:
+                nodes[depth] = arena.getOperand(node);
+                visits[depth] = VISIT_BEFORE;
+                depth++;
+                break;
 
-        return a;
+                default:
+                leafAssembly(arena, node, register, floatMode);
+                break;
+            }
+        }
     }
 
-    private String numTermAssembly(NumTerm term, String register, boolean floatMode) throws CompileException
+    // drops the saved code if it is not for this arena, or if a mode is
+    // generated into another register than before
+    private void useMemo(ExpressionArena arena, Register register, boolean floatMode)
     {
-        String a = "";
+        int mode = floatMode ? 1 : 0;
 
-        // base case: single int factor, simply move into register
-        if (term.getFactor() != null)
+        if (arena != memoArena || (memoRegisters[mode] != null && !memoRegisters[mode].equals(register)))
         {
-            return numFactorAssembly(term.getFactor(), register, floatMode);
+            memo.clear();
+            memoRegisters[0] = null;
+            memoRegisters[1] = null;
+            memoArena = arena;
         }
 
-        if (floatMode)
-        {
-            // evaluate left hand side, put into register
-            a += numTermAssembly(term.getLeft(), register, floatMode);
-
-            // preserve xmm6 and register
-            a += "\tsub esp, 4\n";
-            a += "\tmovss [esp], xmm6\n";
-            a += "\tsub esp, 4\n";
-            a += "\tmovss [esp], " + register + "\n";
+        memoRegisters[mode] = register;
+    }
 
-            // evaluate right hand side, put into register
-            a += numTermAssembly(term.getRight(), register, floatMode);
+    private static long getMemoKey(int node, boolean floatMode)
+    {
+        return ((long) node << 1) | (floatMode ? 1 : 0);
+    }
 
-            // get the left hand side off the stack, and into xmm6
-            a += "\tmovss xmm6, [esp]\n";
-            a += "\tadd esp, 4\n";
+    // saves what a binary operation needs once its left hand side is in the register
+    private void binaryPushAssembly(ExpressionArena arena, int node, Register register, boolean floatMode)
+    {
+        TokenType operator = arena.getOperator(node);
 
-            // perform operation with xmm6 and register
-            if (term.getOperator().getType() == TokenType.TIMES)
+        if (arena.isSum(node))
+        {
+            if (floatMode)
             {
-                a += "\tmulss xmm6, " + register + "\n";
+                // preserve xmm5 and register
+                emit(Opcode.SUB, Register.ESP, STACK_SLOT);
+                emit(Opcode.MOVSS, STACK_TOP, Register.XMM5);
+                emit(Opcode.SUB, Register.ESP, STACK_SLOT);
+                emit(Opcode.MOVSS, STACK_TOP, register);
             }
-            else if (term.getOperator().getType() == TokenType.DIVISION)
+            else
             {
-                a += "\tdivss xmm6, " + register + "\n";
+                // Preserve ecx and register
+                emit(Opcode.PUSH, Register.ECX);
+                emit(Opcode.PUSH, register);
             }
-
-            // move result into register
-            a += "\tmovss " + register + ", xmm6\n";
-
-            // restore original xmm6
-            a += "\tmovss xmm6, [esp]\n";
-            a += "\tadd esp, 4\n";
+        }
+        else if (floatMode)
+        {
+            // preserve xmm6 and register
+            emit(Opcode.SUB, Register.ESP, STACK_SLOT);
+            emit(Opcode.MOVSS, STACK_TOP, Register.XMM6);
+            emit(Opcode.SUB, Register.ESP, STACK_SLOT);
+            emit(Opcode.MOVSS, STACK_TOP, register);
+        }
+        else if (operator == TokenType.TIMES)
+        {
+            // Preserve edx and register
+            emit(Opcode.PUSH, Register.EDX);
+            emit(Opcode.PUSH, register);
         }
         else
         {
-            // Handle multiplication
-            if (term.getOperator().getType() == TokenType.TIMES)
-            {
-                // Evaluate left hand side, put into register
-                a += numTermAssembly(term.getLeft(), register, floatMode);
-
-                // Preserve edx and register
-                a += "\tpush edx\n";
-                a += "\tpush " + register + "\n";
-
-                // Evaluate right hand side, put into register
-                a += numTermAssembly(term.getRight(), register, floatMode);
-
-                // Get left hand side off of the stack
-                a += "\tpop edx\n";
-
-                // Perform operation
-                a += "\timul edx, " + register + "\n";
-
-                // Move result into register
-                a += "\tmov " + register + ", edx\n";
-
-                // Restore original edx
-                a += "\tpop edx\n";
-            }
-            else if ( (term.getOperator().getType() == TokenType.DIVISION ||
-                    term.getOperator().getType() == TokenType.MOD) )
-            {
-                // Evaluate left hand side, put into register
-                a += numTermAssembly(term.getLeft(), register, floatMode);
-
-                // preserve eax, edx, and register
-                a += "\tpush eax\n";
-                a += "\tpush edx\n";
-                a += "\tpush " + register + "\n";
-
-                // evaluate right hand side, put into register
-                a += numTermAssembly(term.getRight(), register, floatMode);
-
-                // get the left hand side off of the stack, put in eax
-                a += "\tpop eax\n";
-
-                // sign extend left hand side
-                a += "\tcdq\n";
-
-                // perform division with register
-                a += "\tidiv " + register + "\n";
-
-                // quotient in eax, remainder in edx, move one of them into
-                // register depending on operation
-                if (term.getOperator().getType() == TokenType.DIVISION)
-                {
-                    a += "\tmov " + register + ", eax\n";
-                }
-                else
-                {
-                    a += "\tmov " + register + ", edx\n";
-                }
-
-                // restore eax and edx
-                a += "\tpop edx\n";
-                a += "\tpop eax\n";
-            }
+            // preserve eax, edx, and register
+            emit(Opcode.PUSH, Register.EAX);
+            emit(Opcode.PUSH, Register.EDX);
+            emit(Opcode.PUSH, register);
         }
-
-        return a;
     }
 
-    private String numFactorAssembly(NumFactor factor, String register, boolean floatMode) throws CompileException
+    // combines the saved left hand side with the right hand side in the register
+    private void binaryOperationAssembly(ExpressionArena arena, int node, Register register, boolean floatMode)
     {
-        String a = "";
-        Token token = factor.getToken();
-        NumExpression expr = factor.getExpression();
+        TokenType operator = arena.getOperator(node);
 
-        if (token != null)
+        if (arena.isSum(node))
         {
-            String valueToConvert;
-
-            switch (token.getType())
+            if (floatMode)
             {
-                // set the literal value with the appropriate syntax
-                case LITERAL_INT:
-                valueToConvert = token.getValue();
+                // get the left hand side off the stack, and into xmm5
+                emit(Opcode.MOVSS, Register.XMM5, STACK_TOP);
+                emit(Opcode.ADD, Register.ESP, STACK_SLOT);
 
-                if (floatMode)
+                // perform operation with xmm5 and register
+                if (operator == TokenType.PLUS)
                 {
-                    a += handleConversion(valueToConvert, register);
+                    emit(Opcode.ADDSS, Register.XMM5, register);
                 }
                 else
                 {
-                    a += "\tmov " + register + ", " + valueToConvert + "\n";
+                    emit(Opcode.SUBSS, Register.XMM5, register);
                 }
-                break;
 
-                case LITERAL_CHAR:
-                valueToConvert = "\'" + token.getValue() + "\'";
+                // move result into register
+                emit(Opcode.MOVSS, register, Register.XMM5);
 
-                if (floatMode)
-                {
-                    a += handleConversion(valueToConvert, register);
-                }
-                else
-                {
-                    a += "\tmov " + register + ", " + valueToConvert + "\n";
-                }
-                break;
-
-                case LITERAL_FLOAT:
-                if (floatMode)
-                {
-                    // Use macro to load float literal into register
-                    a += "\tmovss " + register + ", [" + parser.getLitTable().getLiteralLabel(token.getValue()) + "]\n";
-                    break;
-                }
-
-                throw new CompileException("Attempt to use a float literal in integer expression");
-
-                case IDENTIFIER:
-                Integer offset = tableStack.getOffset(token.getValue());
-                String type = tableStack.getVarInfo(token.getValue()).getType();
-
-                if (offset == -1)
-                {
-                    throw new CompileException("Unknown identifier: '" + token.getValue() + "'");
-                }
+                // restore original xmm5
+                emit(Opcode.MOVSS, Register.XMM5, STACK_TOP);
+                emit(Opcode.ADD, Register.ESP, STACK_SLOT);
+            }
+            else
+            {
+                // Get left hand side off of the stack
+                emit(Opcode.POP, Register.ECX);
 
-                if (floatMode)
+                // Perform operation
+                if (operator == TokenType.PLUS)
                 {
-                    if ( type.equals(Tokenizer.TYPE_INT) || type.equals(Tokenizer.TYPE_CHAR) )
-                    {
-                        valueToConvert = "[ebp + " + offset.toString() + "]";
-                        a += handleConversion(valueToConvert, register);
-                    }
-                    else if (type.equals(Tokenizer.TYPE_FLOAT))
-                    {
-                        a += "\tmovss " + register + ", [ebp + " + offset.toString() + "]\n";
-                    }
-                    else
-                    {
-                        throw new CompileException("Expected identifier for number, got one for type " + type);
-                    }
+                    emit(Opcode.ADD, Register.ECX, register);
                 }
                 else
                 {
-                    if ( !(type.equals(Tokenizer.TYPE_INT) || type.equals(Tokenizer.TYPE_CHAR)) )
-                    {
-                        throw new CompileException("Expected identifier for an integer or character, got one for type " + type);
-                    }
-
-                    a += "\tmov " + register + ", [ebp + " + offset.toString() + "]\n";
+                    emit(Opcode.SUB, Register.ECX, register);
                 }
 
-                break;
+                // Move result into register
+                emit(Opcode.MOV, register, Register.ECX);
 
-                default:
-                break;
+                // Restore original ecx
+                emit(Opcode.POP, Register.ECX);
             }
         }
-        else
+        else if (floatMode)
         {
-            a += numExpressionAssembly(expr, register, floatMode);
-        }
+            // get the left hand side off the stack, and into xmm6
+            emit(Opcode.MOVSS, Register.XMM6, STACK_TOP);
+            emit(Opcode.ADD, Register.ESP, STACK_SLOT);
 
-        if (factor.isNegative()) 
-        {
-            if (floatMode) 
+            // perform operation with xmm6 and register
+            if (operator == TokenType.TIMES)
             {
-                a += "\tmovss xmm7, [" + FLOAT_NEG_MASK + "]\n";
-                a += "\txorps " + register + ", xmm7\n";
-            } 
-            else 
+                emit(Opcode.MULSS, Register.XMM6, register);
+            }
+            else if (operator == TokenType.DIVISION)
             {
-                a += "\tneg " + register + "\n";
+                emit(Opcode.DIVSS, Register.XMM6, register);
             }
+
+            // move result into register
+            emit(Opcode.MOVSS, register, Register.XMM6);
+
+            // restore original xmm6
+            emit(Opcode.MOVSS, Register.XMM6, STACK_TOP);
+            emit(Opcode.ADD, Register.ESP, STACK_SLOT);
         }
+        else if (operator == TokenType.TIMES)
+        {
+            // Get left hand side off of the stack
+            emit(Opcode.POP, Register.EDX);
 
-        return a;
-    }
+            // Perform operation
+            emit(Opcode.IMUL, Register.EDX, register);
 
-    private String handleConversion(String value, String register)
-    {
-        String a = "";
+            // Move result into register
+            emit(Opcode.MOV, register, Register.EDX);
 
-        // We need to convert ints to floats
+            // Restore original edx
+            emit(Opcode.POP, Register.EDX);
+        }
+        else
+        {
+            // get the left hand side off of the stack, put in eax
+            emit(Opcode.POP, Register.EAX);
 
-        // preserve eax first, in case it's being used
-        a += "\tpush eax\n";
+            // sign extend left hand side
+            emit(Opcode.CDQ);
 
-        // Perform the conversion
-        a += "\tmov eax, " + value + "\n";
-        a += "\tcvtsi2ss " + register + ", eax\n";
+            // perform division with register
+            emit(Opcode.IDIV, register);
 
-        // put eax back
-        a += "\tpop eax\n";
+            // quotient in eax, remainder in edx, move one of them into
+            // register depending on operation
+            if (operator == TokenType.DIVISION)
+            {
+                emit(Opcode.MOV, register, Register.EAX);
+            }
+            else
+            {
+                emit(Opcode.MOV, register, Register.EDX);
+            }
 
-        return a;
+            // restore eax and edx
+            emit(Opcode.POP, Register.EDX);
+            emit(Opcode.POP, Register.EAX);
+        }
     }
 
-    private String generatePreamble()
+    private void leafAssembly(ExpressionArena arena, int leaf, Register register, boolean floatMode) throws CompileException
     {
-        String a = "";
+        Token token = arena.getToken(leaf);
+        Immediate valueToConvert;
 
-        a += "section .text\n";
-        a += "global _start\n\n";
-        a += "_start:\n";
-        a += "\tmov ebp, esp\n";
+        switch (token.getType())
+        {
+            // set the literal value with the appropriate syntax
+            case LITERAL_INT:
+            valueToConvert = new Immediate(new BigInteger(token.getValue()).intValue(), token.getValue());
 
-        return a;
-    }
+            if (floatMode)
+            {
+                handleConversion(valueToConvert, register);
+            }
+            else
+            {
+                emit(Opcode.MOV, register, valueToConvert);
+            }
+            break;
 
-    private String generateDataSegment() throws CompileException
-    {
-        String a = "";
-        Iterator<String> literalIterator = parser.getLitTable().getLiteralIterator();
-        int labelCount = 0;
+            case LITERAL_CHAR:
+            valueToConvert = new Immediate(charValue(token.getValue()), "\'" + token.getValue() + "\'");
 
-        a += "section .data\n";
+            if (floatMode)
+            {
+                handleConversion(valueToConvert, register);
+            }
+            else
+            {
+                emit(Opcode.MOV, register, valueToConvert);
+            }
+            break;
 
-        while (literalIterator.hasNext())
-        {
-            String current = literalIterator.next();
-            String label = "lit" + Integer.toString(labelCount);
-            String type = parser.getLitTable().getLiteralType(current);
-            
-            switch (type)
+            case LITERAL_FLOAT:
+            if (floatMode)
             {
-                case Tokenizer.TYPE_STRING:
-                a += label + " db " + stringToAsmLiteral(current) + "\n";
+                // Load the float literal from the data section into register
+                emit(Opcode.MOVSS, register, new Memory(literalLabel(arena.getLiteralId(leaf))));
                 break;
+            }
 
-                case Tokenizer.TYPE_FLOAT:
-                a += label + " dd " + current + "\n";
-                break;
+            throw new CompileException("Attempt to use a float literal in integer expression");
 
-                default:
-                throw new CompileException("Unknown literal type: " + type);
-            }
+            case IDENTIFIER:
+            Memory location = frame(arena.getOffset(leaf));
 
-            parser.getLitTable().addLabelForLiteral(current, label);
-            labelCount++;
-        }
+            if (floatMode && !arena.getVariableType(leaf).isFloat())
+            {
+                handleConversion(location, register);
+            }
+            else if (floatMode)
+            {
+                emit(Opcode.MOVSS, register, location);
+            }
+            else
+            {
+                emit(Opcode.MOV, register, location);
+            }
 
-        a += PTR_DATA + " db " + parser.getSymbolTable().getAllDataSize() + " dup(0)\n";
-        // a += BUFFER + " db " + BUFFER_SIZE + " dup(0)\n";
-        a += FLOAT_NEG_MASK + " dd 0x80000000\n";
+            break;
 
-        return a;
+            default:
+            break;
+        }
     }
 
-    private String stringToAsmLiteral(String inputString) {
-        // Use StringBuilder for efficient string concatenation
-        String asmLiteral = "";
-        
-        // Iterate through each character in the input string
-        for (char c : inputString.toCharArray()) 
+    // the value NASM gives a character constant: its UTF-8 bytes, the first
+    // one lowest
+    private static int charValue(String character)
+    {
+        byte[] bytes = character.getBytes(StandardCharsets.UTF_8);
+        int value = 0;
+
+        for (int i = 0; i < bytes.length && i < 4; i++)
         {
-            switch (c) 
-            {
-                case '\n':
-                asmLiteral += "0x0A, ";
-                break;
+            value |= (bytes[i] & 0xFF) << (8 * i);
+        }
 
-                case '\t':
-                asmLiteral += "0x09, ";
-                break;
+        return value;
+    }
 
-                case '\\':
-                asmLiteral += "0x5C, ";
-                break;
+    private void handleConversion(Operand value, Register register)
+    {
+        // We need to convert ints to floats
 
-                case '\"':
-                asmLiteral += "0x22, ";
-                break;
+        // preserve eax first, in case it's being used
+        emit(Opcode.PUSH, Register.EAX);
 
-                case '\'':
-                asmLiteral += "0x27, ";
-                break;
+        // Perform the conversion
+        emit(Opcode.MOV, Register.EAX, value);
+        emit(Opcode.CVTSI2SS, register, Register.EAX);
 
-                default:
-                asmLiteral += "'" + c + "', ";
-                break;
-            }
-        }
-        
-        // Append 0 at the end for null-termination
-        asmLiteral += "0";
-        
-        return asmLiteral;
+        // put eax back
+        emit(Opcode.POP, Register.EAX);
+    }
+
+    private void generatePreamble()
+    {
+        code.add(Instruction.label(START));
+        emit(Opcode.MOV, Register.EBP, Register.ESP);
     }
 }
@@ -1,6 +1,13 @@
 package codegen;
 
+import tokenizer.Token;
+
 public class CompileException extends Exception {
+    public CompileException(String message, Token offendingToken)
+    {
+        super("Line " + offendingToken.getLine() + ", Col " + offendingToken.getCol() + ": " + message);
+    }
+
     public CompileException(String message)
     {
         super(message);
@@ -1,97 +1,411 @@
 package codegen;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
 
-import parser.Parser;
+import parser.ParseException;
+import parser.ProgramParser;
+import tokenizer.TokenException;
 
 public class Compiler {
-    private Parser parser;
+    private ProgramParser parser;
+    private boolean useNasm;
+    private boolean crossCheck;
+    private boolean keepIntermediates;
 
-    public Compiler(Parser inParser)
+    // where intermediate files go while compiling when they are not kept,
+    // or null until one is needed
+    private Path scratchDirectory;
+
+    public Compiler(ProgramParser inParser)
     {
         parser = inParser;
+        useNasm = false;
+        crossCheck = false;
+        keepIntermediates = false;
+        scratchDirectory = null;
     }
 
     public void compile(String executableFile, boolean verbose) throws CompileException
     {
-        String sourceFile = executableFile + ".asm";
-        String objectFile = executableFile + ".o";
+        AssemblyGenerator generator = new AssemblyGenerator(parser);
+        List<Instruction> text = generator.generateCode();
+
+        try
+        {
+            // the object is encoded here, unless NASM is asked for or the code
+            // has something the encoder does not know
+            byte[] object = useNasm ? null : generator.encodeObject(text);
+
+            if (object != null)
+            {
+                if (verbose)
+                {
+                    System.out.println("Successfully encoded object code.");
+                }
+
+                if (keepIntermediates)
+                {
+                    generator.writeAssembly(text, executableFile + ".asm");
+                    writeFile(executableFile + ".o", object);
+                }
+
+                if (crossCheck)
+                {
+                    crossCheck(generator, text, object, executableFile, verbose);
+                }
+
+                link(object, executableFile, verbose);
+                return;
+            }
+
+            String sourceFile = intermediateFile(executableFile, ".asm");
+            generator.writeAssembly(text, sourceFile);
+
+            if (verbose)
+            {
+                System.out.println("Successfully wrote assembly code.");
+            }
+
+            object = assemble(sourceFile, intermediateFile(executableFile, ".o"), verbose);
+
+            if (object != null)
+            {
+                link(object, executableFile, verbose);
+            }
+        }
+        finally
+        {
+            removeIntermediates();
+        }
+    }
+
+    // assemble with NASM instead of encoding the object here
+    public void setUseNasm(boolean inUseNasm)
+    {
+        useNasm = inUseNasm;
+    }
+
+    // also assemble with NASM, and check its code and data are the same as
+    // the encoded ones
+    public void setCrossCheck(boolean inCrossCheck)
+    {
+        crossCheck = inCrossCheck;
+    }
 
+    // leave the assembly and object files next to the executable, instead
+    // of removing them once it is linked
+    public void setKeepIntermediates(boolean inKeepIntermediates)
+    {
+        keepIntermediates = inKeepIntermediates;
+    }
+
+    // compiles the program while the parser parses it, so the statements
+    // are never all in memory at once. The parser must not have parsed any
+    // of the program yet. The code is written out as it is generated, so
+    // it is always assembled by NASM
+    public void compileStreaming(String executableFile, boolean verbose) throws CompileException, ParseException, TokenException
+    {
         AssemblyGenerator generator = new AssemblyGenerator(parser);
 
         try
         {
-            generator.generateProgram(sourceFile);
+            String sourceFile = intermediateFile(executableFile, ".asm");
+            generator.generateStreaming(sourceFile);
 
             if (verbose)
             {
                 System.out.println("Successfully wrote assembly code.");
             }
 
-            // Use ProcessBuilder to run NASM and ld
-            ProcessBuilder assembler = new ProcessBuilder("nasm", "-f", "elf32", sourceFile, "-o", objectFile);
-            ProcessBuilder linker = new ProcessBuilder("ld", "-m", "elf_i386", "-o", executableFile, objectFile);
+            byte[] object = assemble(sourceFile, intermediateFile(executableFile, ".o"), verbose);
+
+            if (object != null)
+            {
+                link(object, executableFile, verbose);
+            }
+        }
+        finally
+        {
+            removeIntermediates();
+        }
+    }
+
+    private void crossCheck(AssemblyGenerator generator, List<Instruction> text, byte[] object, String executableFile, boolean verbose) throws CompileException
+    {
+        String sourceFile = intermediateFile(executableFile, ".asm");
+
+        // kept assembly has already been written
+        if (!keepIntermediates)
+        {
+            generator.writeAssembly(text, sourceFile);
+        }
+
+        byte[] nasmObject = assemble(sourceFile, intermediateFile(executableFile, ".o.nasm"), verbose);
+
+        if (nasmObject == null)
+        {
+            return;
+        }
+
+        for (String section : new String[] { ".text", ".data" })
+        {
+            if (!Arrays.equals(ElfObject.readSection(object, section), ElfObject.readSection(nasmObject, section)))
+            {
+                throw new CompileException("The encoded " + section + " section is not the same as NASM's");
+            }
+        }
+
+        if (verbose)
+        {
+            System.out.println("Encoded object matches NASM's.");
+        }
+    }
+
+    // runs NASM on the source, returns the object it wrote or null if it
+    // failed
+    private byte[] assemble(String sourceFile, String objectFile, boolean verbose)
+    {
+        // NASM reads the source once for every pass, so it is given a file
+        // rather than a pipe
+        ProcessBuilder assembler = new ProcessBuilder("nasm", "-f", "elf32", sourceFile, "-o", objectFile);
+
+        try
+        {
+            // Start and execute the assembler process
+            if (verbose)
+            {
+                System.out.println("Assembling the file...");
+            }
+
+            if (runProcess(assembler))
+            {
+                if (verbose)
+                {
+                    System.out.println("Assembly successful.");
+                }
+
+                return Files.readAllBytes(Paths.get(objectFile));
+            }
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+        catch (InterruptedException e)
+        {
+            e.printStackTrace();
+            Thread.currentThread().interrupt(); // Restore the interrupted status
+        }
+
+        return null;
+    }
+
+    // links the object into the executable here, or with ld if the object
+    // needs something the built-in linker cannot do
+    private void link(byte[] object, String executableFile, boolean verbose) throws CompileException
+    {
+        if (verbose)
+        {
+            System.out.println("Linking...");
+        }
+
+        try
+        {
+            ElfLinker linker = new ElfLinker(object);
+            linker.link(AssemblyGenerator.START.getName());
+            linker.write(executableFile);
+
+            if (verbose)
+            {
+                System.out.println("Linking successful.");
+            }
+
+            System.out.println("Executable created: " + executableFile);
+            return;
+        }
+        catch (CompileException e)
+        {
+            if (verbose)
+            {
+                System.out.println(e.getMessage() + ", linking with ld instead.");
+            }
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+            return;
+        }
+
+        // ld needs the object in a file
+        String objectFile = intermediateFile(executableFile, ".o");
+        writeFile(objectFile, object);
+        runLinker(objectFile, executableFile, verbose);
+    }
+
+    private void runLinker(String objectFile, String executableFile, boolean verbose)
+    {
+        ProcessBuilder linker = new ProcessBuilder("ld", "-m", "elf_i386", "-o", executableFile, objectFile);
 
-            try 
+        try
+        {
+            // Start and execute the linker process
+            if (runProcess(linker))
             {
-                // Start and execute the assembler process
                 if (verbose)
                 {
-                    System.out.println("Assembling the file...");
+                    System.out.println("Linking successful.");
                 }
 
-                Process asmProcess = assembler.start();
-                if (asmProcess.waitFor() == 0) 
+                System.out.println("Executable created: " + executableFile);
+            }
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+        catch (InterruptedException e)
+        {
+            e.printStackTrace();
+            Thread.currentThread().interrupt(); // Restore the interrupted status
+        }
+    }
+
+    // runs a process to the end and prints its output if it fails. Its
+    // output and errors are read while it runs, each on a thread of its
+    // own, so it never waits on a full pipe
+    private boolean runProcess(ProcessBuilder builder) throws IOException, InterruptedException
+    {
+        Process process = builder.start();
+        process.getOutputStream().close();
+
+        OutputReader output = new OutputReader(process.getInputStream());
+        OutputReader errors = new OutputReader(process.getErrorStream());
+
+        boolean succeeded = process.waitFor() == 0;
+        String outputText = output.getText();
+        String errorText = errors.getText();
+
+        if (!succeeded)
+        {
+            System.out.println("Error:");
+            System.out.print(outputText);
+            System.out.print(errorText);
+        }
+
+        return succeeded;
+    }
+
+    // the path of an intermediate file of the executable. Kept files go next
+    // to the executable, the others in a directory that is removed after
+    // compiling, in memory when /dev/shm is there
+    private String intermediateFile(String executableFile, String suffix) throws CompileException
+    {
+        if (keepIntermediates)
+        {
+            return executableFile + suffix;
+        }
+
+        if (scratchDirectory == null)
+        {
+            Path sharedMemory = Paths.get("/dev/shm");
+
+            try
+            {
+                if (Files.isDirectory(sharedMemory) && Files.isWritable(sharedMemory))
                 {
-                    if (verbose)
-                    {
-                        System.out.println("Assembly successful. Linking...");
-                    }
-                    
-                    // Start and execute the linker process
-                    Process linkProcess = linker.start();
-                    if (linkProcess.waitFor() == 0) 
-                    {
-                        if (verbose)
-                        {
-                            System.out.println("Linking successful.");
-                        }
-
-                        System.out.println("Executable created: " + executableFile);
-                    } 
-                    else 
-                    {
-                        // Output error stream if linking fails
-                        printProcessErrors(linkProcess);
-                    }
-                } 
-                else 
+                    scratchDirectory = Files.createTempDirectory(sharedMemory, "nexus");
+                }
+                else
                 {
-                    // Output error stream if assembly fails
-                    printProcessErrors(asmProcess);
+                    scratchDirectory = Files.createTempDirectory("nexus");
                 }
-            } 
-            catch (IOException | InterruptedException e) 
+            }
+            catch (IOException e)
             {
-                e.printStackTrace();
-                Thread.currentThread().interrupt(); // Restore the interrupted status
+                throw new CompileException("Could not create a directory for intermediate files: " + e.getMessage());
             }
         }
-        catch (CompileException exception)
+
+        return scratchDirectory.resolve(Paths.get(executableFile).getFileName() + suffix).toString();
+    }
+
+    private void writeFile(String file, byte[] contents) throws CompileException
+    {
+        try
+        {
+            Files.write(Paths.get(file), contents);
+        }
+        catch (IOException e)
         {
-            throw exception;
+            throw new CompileException("Could not write '" + file + "': " + e.getMessage());
         }
     }
 
-    private void printProcessErrors(Process process) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
-            String line;
-            System.out.println("Error:");
-            while ((line = reader.readLine()) != null) {
-                System.out.println(line);
+    private void removeIntermediates()
+    {
+        if (scratchDirectory == null)
+        {
+            return;
+        }
+
+        try (Stream<Path> files = Files.list(scratchDirectory))
+        {
+            for (Path file : (Iterable<Path>) files::iterator)
+            {
+                Files.delete(file);
+            }
+
+            Files.delete(scratchDirectory);
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+
+        scratchDirectory = null;
+    }
+
+    // reads everything from a stream on a thread of its own
+    private static class OutputReader implements Runnable
+    {
+        private InputStream stream;
+        private ByteArrayOutputStream text;
+        private Thread thread;
+
+        OutputReader(InputStream inStream)
+        {
+            stream = inStream;
+            text = new ByteArrayOutputStream();
+            thread = new Thread(this, "process output");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        public void run()
+        {
+            try (InputStream in = stream)
+            {
+                in.transferTo(text);
             }
+            catch (IOException e)
+            {
+                // the stream was closed, keep what was read
+            }
+        }
+
+        // waits for the stream to end
+        String getText() throws InterruptedException
+        {
+            thread.join();
+            return text.toString();
         }
     }
 }
@@ -0,0 +1,112 @@
+package codegen;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import parser.LiteralPool;
+
+// The bytes of a program's data section and the offsets of its labels, laid
+// out the same way as the data section NasmPrinter writes
+public class DataSection
+{
+    private byte[] data;
+    private int size;
+    private HashMap<String, Integer> labels;
+
+    public DataSection(LiteralPool literals, int pointerDataSize) throws CompileException
+    {
+        data = new byte[64];
+        size = 0;
+        labels = new HashMap<String, Integer>();
+
+        for (int id = 0; id < literals.size(); id++)
+        {
+            if (literals.getKind(id) == LiteralPool.FLOAT)
+            {
+                labels.put(AssemblyGenerator.LITERAL_LABEL + id, size);
+                putInt(Float.floatToRawIntBits(parseFloat(literals.getValue(id))));
+            }
+            else if (literals.getOwner(id) == id)
+            {
+                labels.put(AssemblyGenerator.LITERAL_LABEL + id, size);
+                putBytes(literals.getValue(id).getBytes(StandardCharsets.UTF_8));
+                put(0);
+            }
+        }
+
+        // strings stored in others are only labels into them
+        for (int id = 0; id < literals.size(); id++)
+        {
+            if (literals.getKind(id) == LiteralPool.STRING && literals.getOwner(id) != id)
+            {
+                int owner = labels.get(AssemblyGenerator.LITERAL_LABEL + literals.getOwner(id));
+                labels.put(AssemblyGenerator.LITERAL_LABEL + id, owner + literals.getOwnerOffset(id));
+            }
+        }
+
+        labels.put(AssemblyGenerator.PTR_DATA, size);
+        putBytes(new byte[pointerDataSize]);
+        labels.put(AssemblyGenerator.FLOAT_NEG_MASK, size);
+        putInt(0x80000000);
+    }
+
+    public byte[] getBytes()
+    {
+        return Arrays.copyOf(data, size);
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    // the offset of a label in the data, or -1 if it is not in it
+    public int getLabelOffset(String name)
+    {
+        Integer offset = labels.get(name);
+        return offset == null ? -1 : offset;
+    }
+
+    private static float parseFloat(String literal) throws CompileException
+    {
+        try
+        {
+            return Float.parseFloat(literal);
+        }
+        catch (NumberFormatException exception)
+        {
+            throw new CompileException("Cannot encode the float literal '" + literal + "'");
+        }
+    }
+
+    private void put(int b)
+    {
+        if (size == data.length)
+        {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+
+        data[size] = (byte) b;
+        size++;
+    }
+
+    private void putInt(int value)
+    {
+        put(value);
+        put(value >> 8);
+        put(value >> 16);
+        put(value >> 24);
+    }
+
+    private void putBytes(byte[] bytes)
+    {
+        if (size + bytes.length > data.length)
+        {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, size + bytes.length));
+        }
+
+        System.arraycopy(bytes, 0, data, size, bytes.length);
+        size += bytes.length;
+    }
+}
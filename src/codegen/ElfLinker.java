@@ -0,0 +1,360 @@
+package codegen;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Links a single ELF32 relocatable object for i386 into a static executable,
+// for objects that need nothing from any other file. Code and read-only
+// sections are loaded in one segment with the headers, writable ones in a
+// second, with .bss taking memory but no room in the file. The data segment
+// starts right after the code in the file, and is mapped at the next page
+// so the two can have different permissions. The executable has no section
+// headers, only what is needed to load and run it
+public class ElfLinker
+{
+    public static final int BASE_ADDRESS = 0x08048000;
+    public static final int PAGE_SIZE = 0x1000;
+
+    private static final int HEADER_SIZE = 52;
+    private static final int PROGRAM_HEADER_SIZE = 32;
+    private static final int SECTION_HEADER_SIZE = 40;
+    private static final int SYMBOL_SIZE = 16;
+    private static final int RELOCATION_SIZE = 8;
+
+    private static final int ET_REL = 1;
+    private static final int ET_EXEC = 2;
+    private static final int EM_386 = 3;
+    private static final int SHT_SYMTAB = 2;
+    private static final int SHT_RELA = 4;
+    private static final int SHT_NOBITS = 8;
+    private static final int SHT_REL = 9;
+    private static final int SHF_WRITE = 1;
+    private static final int SHF_ALLOC = 2;
+    private static final int SHN_UNDEF = 0;
+    private static final int SHN_ABS = 0xFFF1;
+    private static final int PT_LOAD = 1;
+    private static final int PT_GNU_STACK = 0x6474E551;
+    private static final int PF_X = 1;
+    private static final int PF_W = 2;
+    private static final int PF_R = 4;
+    private static final int R_386_32 = 1;
+    private static final int R_386_PC32 = 2;
+
+    private ByteBuffer object;
+    private int sectionCount;
+    private int sectionHeaders;
+
+    // the address each section is loaded at, or -1 if it is not loaded
+    private int[] addresses;
+    private boolean hasData;
+
+    // the contents of the two segments, laid out by the sections' addresses
+    private byte[] code;
+    private byte[] data;
+    private int codeAddress;
+    private int dataAddress;
+    private int dataMemorySize;
+    private int entry;
+
+    public ElfLinker(byte[] objectCode) throws CompileException
+    {
+        object = ByteBuffer.wrap(objectCode).order(ByteOrder.LITTLE_ENDIAN);
+
+        if (object.capacity() < HEADER_SIZE || object.getInt(0) != 0x464C457F || object.get(4) != 1 ||
+            object.get(5) != 1 || object.getShort(16) != ET_REL || object.getShort(18) != EM_386)
+        {
+            throw new CompileException("The object is not an ELF32 i386 object");
+        }
+
+        sectionHeaders = object.getInt(32);
+        sectionCount = object.getShort(48) & 0xFFFF;
+        addresses = new int[sectionCount];
+    }
+
+    // lays out the sections, applies the relocations and finds the entry
+    // point. Fails on anything a single object for Linux does not need
+    public void link(String entryName) throws CompileException
+    {
+        hasData = false;
+
+        for (int i = 0; i < sectionCount; i++)
+        {
+            hasData |= isLoaded(i) && (getSectionFlags(i) & SHF_WRITE) != 0;
+        }
+
+        int headersSize = HEADER_SIZE + getProgramHeaderCount() * PROGRAM_HEADER_SIZE;
+
+        codeAddress = BASE_ADDRESS;
+        int codeEnd = layOut(false, false, BASE_ADDRESS + headersSize);
+        code = new byte[codeEnd - codeAddress];
+
+        // the data goes on the next page at the same offset into it as it
+        // has in the file, which is just after the code
+        dataAddress = codeEnd + PAGE_SIZE;
+        int dataEnd = layOut(true, false, dataAddress);
+        data = new byte[dataEnd - dataAddress];
+        dataMemorySize = layOut(true, true, dataEnd) - dataAddress;
+
+        copySections();
+        relocate();
+        entry = findSymbol(entryName);
+    }
+
+    // writes the executable with one write of the whole file
+    public void write(String executableFile) throws IOException
+    {
+        int programHeaders = getProgramHeaderCount();
+        int dataOffset = code.length;
+        ByteBuffer out = ByteBuffer.allocate(code.length + data.length).order(ByteOrder.LITTLE_ENDIAN);
+
+        // the headers are the start of the code segment
+        out.put(code);
+        out.put(data);
+
+        out.position(0);
+        out.put(new byte[] { 0x7F, 'E', 'L', 'F', 1, 1, 1 });
+        out.position(16);
+        out.putShort((short) ET_EXEC);
+        out.putShort((short) EM_386);
+        out.putInt(1);
+        out.putInt(entry);
+        out.putInt(HEADER_SIZE);
+        out.putInt(0);
+        out.putInt(0);
+        out.putShort((short) HEADER_SIZE);
+        out.putShort((short) PROGRAM_HEADER_SIZE);
+        out.putShort((short) programHeaders);
+        out.putShort((short) SECTION_HEADER_SIZE);
+        out.putShort((short) 0);
+        out.putShort((short) 0);
+
+        putProgramHeader(out, PT_LOAD, 0, codeAddress, code.length, code.length, PF_R | PF_X, PAGE_SIZE);
+
+        if (hasData)
+        {
+            putProgramHeader(out, PT_LOAD, dataOffset, dataAddress, data.length, dataMemorySize, PF_R | PF_W, PAGE_SIZE);
+        }
+
+        // the stack is not executable
+        putProgramHeader(out, PT_GNU_STACK, 0, 0, 0, 0, PF_R | PF_W, 16);
+
+        out.position(0);
+
+        try (FileChannel channel = FileChannel.open(Paths.get(executableFile), StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            while (out.hasRemaining())
+            {
+                channel.write(out);
+            }
+        }
+
+        new File(executableFile).setExecutable(true, false);
+    }
+
+    // the code segment, the data segment if there is one, and the stack
+    private int getProgramHeaderCount()
+    {
+        return hasData ? 3 : 2;
+    }
+
+    // gives the loaded sections of one kind their addresses from the given
+    // one on, in the order they are in the object. Returns the end of them
+    private int layOut(boolean writable, boolean bss, int address)
+    {
+        for (int i = 0; i < sectionCount; i++)
+        {
+            if (!isLoaded(i) || ((getSectionFlags(i) & SHF_WRITE) != 0) != writable ||
+                (getSectionType(i) == SHT_NOBITS) != bss)
+            {
+                continue;
+            }
+
+            int alignment = Math.max(1, getSectionInt(i, 32));
+            address = (address + alignment - 1) / alignment * alignment;
+            addresses[i] = address;
+            address += getSectionInt(i, 20);
+        }
+
+        return address;
+    }
+
+    private void copySections()
+    {
+        for (int i = 0; i < sectionCount; i++)
+        {
+            if (!isLoaded(i) || getSectionType(i) == SHT_NOBITS)
+            {
+                continue;
+            }
+
+            boolean writable = (getSectionFlags(i) & SHF_WRITE) != 0;
+            byte[] segment = writable ? data : code;
+            int start = addresses[i] - (writable ? dataAddress : codeAddress);
+
+            object.get(getSectionInt(i, 16), segment, start, getSectionInt(i, 20));
+        }
+    }
+
+    // applies the relocations of every loaded section. The addend of each
+    // is what is already at the place it relocates
+    private void relocate() throws CompileException
+    {
+        for (int i = 0; i < sectionCount; i++)
+        {
+            int type = getSectionType(i);
+
+            if ((type != SHT_REL && type != SHT_RELA) || !isLoaded(getSectionInt(i, 28)))
+            {
+                continue;
+            }
+
+            if (type == SHT_RELA)
+            {
+                throw new CompileException("Relocations with explicit addends are not supported");
+            }
+
+            int target = getSectionInt(i, 28);
+            int symbols = getSectionInt(i, 24);
+            boolean writable = (getSectionFlags(target) & SHF_WRITE) != 0;
+            byte[] segment = writable ? data : code;
+            int segmentAddress = writable ? dataAddress : codeAddress;
+            int offset = getSectionInt(i, 16);
+            int count = getSectionInt(i, 20) / RELOCATION_SIZE;
+
+            for (int r = 0; r < count; r++)
+            {
+                int place = addresses[target] + object.getInt(offset + r * RELOCATION_SIZE);
+                int info = object.getInt(offset + r * RELOCATION_SIZE + 4);
+                int value = getSymbolValue(symbols, info >>> 8);
+                int at = place - segmentAddress;
+
+                switch (info & 0xFF)
+                {
+                    case R_386_32:
+                    putInt(segment, at, getInt(segment, at) + value);
+                    break;
+
+                    case R_386_PC32:
+                    putInt(segment, at, getInt(segment, at) + value - place);
+                    break;
+
+                    default:
+                    throw new CompileException("Relocation type " + (info & 0xFF) + " is not supported");
+                }
+            }
+        }
+    }
+
+    // the address of a global symbol defined in the object
+    private int findSymbol(String name) throws CompileException
+    {
+        for (int i = 0; i < sectionCount; i++)
+        {
+            if (getSectionType(i) != SHT_SYMTAB)
+            {
+                continue;
+            }
+
+            int names = getSectionInt(getSectionInt(i, 24), 16);
+            int count = getSectionInt(i, 20) / SYMBOL_SIZE;
+
+            for (int s = 0; s < count; s++)
+            {
+                int symbol = getSectionInt(i, 16) + s * SYMBOL_SIZE;
+
+                if ((object.get(symbol + 12) >> 4) != 0 && getString(names + object.getInt(symbol)).equals(name))
+                {
+                    return getSymbolValue(i, s);
+                }
+            }
+        }
+
+        throw new CompileException("The entry symbol '" + name + "' is not defined");
+    }
+
+    // the address of a symbol in a symbol table section
+    private int getSymbolValue(int table, int index) throws CompileException
+    {
+        int symbol = getSectionInt(table, 16) + index * SYMBOL_SIZE;
+        int value = object.getInt(symbol + 4);
+        int section = object.getShort(symbol + 14) & 0xFFFF;
+
+        if (section == SHN_ABS)
+        {
+            return value;
+        }
+
+        if (section == SHN_UNDEF || section >= sectionCount || !isLoaded(section))
+        {
+            throw new CompileException("A symbol the object uses is not defined in it");
+        }
+
+        return addresses[section] + value;
+    }
+
+    private boolean isLoaded(int section)
+    {
+        return section > 0 && section < sectionCount && (getSectionFlags(section) & SHF_ALLOC) != 0;
+    }
+
+    private int getSectionType(int section)
+    {
+        return getSectionInt(section, 4);
+    }
+
+    private int getSectionFlags(int section)
+    {
+        return getSectionInt(section, 8);
+    }
+
+    private int getSectionInt(int section, int field)
+    {
+        return object.getInt(sectionHeaders + section * SECTION_HEADER_SIZE + field);
+    }
+
+    private String getString(int offset)
+    {
+        int end = offset;
+
+        while (object.get(end) != 0)
+        {
+            end++;
+        }
+
+        return new String(object.array(), offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static void putProgramHeader(ByteBuffer out, int type, int offset, int address, int fileSize,
+                                         int memorySize, int flags, int alignment)
+    {
+        out.putInt(type);
+        out.putInt(offset);
+        out.putInt(address);
+        out.putInt(address);
+        out.putInt(fileSize);
+        out.putInt(memorySize);
+        out.putInt(flags);
+        out.putInt(alignment);
+    }
+
+    private static int getInt(byte[] bytes, int offset)
+    {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8 |
+               (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24;
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value)
+    {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >> 8);
+        bytes[offset + 2] = (byte) (value >> 16);
+        bytes[offset + 3] = (byte) (value >> 24);
+    }
+}
@@ -0,0 +1,252 @@
+package codegen;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+// An ELF32 relocatable object for i386 of encoded code and its data, as
+// nasm -f elf32 would write it. The object has a .text and a .data section,
+// the entry label as its only global symbol, and a relocation for every
+// address in the code, all of them against the start of a section
+public class ElfObject
+{
+    private static final int HEADER_SIZE = 52;
+    private static final int SECTION_HEADER_SIZE = 40;
+    private static final int SYMBOL_SIZE = 16;
+    private static final int RELOCATION_SIZE = 8;
+
+    private static final int ET_REL = 1;
+    private static final int EM_386 = 3;
+    private static final int SHT_PROGBITS = 1;
+    private static final int SHT_SYMTAB = 2;
+    private static final int SHT_STRTAB = 3;
+    private static final int SHT_REL = 9;
+    private static final int SHF_WRITE = 1;
+    private static final int SHF_ALLOC = 2;
+    private static final int SHF_EXECINSTR = 4;
+    private static final int STB_GLOBAL = 1;
+    private static final int STT_SECTION = 3;
+    private static final int R_386_32 = 1;
+
+    // section indices
+    private static final int TEXT = 1;
+    private static final int DATA = 2;
+    private static final int SHSTRTAB = 3;
+    private static final int SYMTAB = 4;
+    private static final int STRTAB = 5;
+    private static final int REL_TEXT = 6;
+    private static final int SECTION_COUNT = 7;
+
+    // symbol indices, the locals come first
+    private static final int TEXT_SYMBOL = 1;
+    private static final int DATA_SYMBOL = 2;
+    private static final int ENTRY_SYMBOL = 3;
+    private static final int SYMBOL_COUNT = 4;
+
+    private static final String SECTION_NAMES = "\0.text\0.data\0.shstrtab\0.symtab\0.strtab\0.rel.text\0";
+
+    private byte[] text;
+    private byte[] data;
+    private int[] relocationOffsets;
+    private int[] relocationSymbols;
+    private String entryName;
+    private int entryOffset;
+
+    // resolves every address in the code to an offset into a section. Fails
+    // if the code uses a label that is neither in it nor in the data
+    public ElfObject(X86Encoder code, DataSection dataSection, Label entry) throws CompileException
+    {
+        List<X86Encoder.Relocation> relocations = code.getRelocations();
+
+        text = code.getCode();
+        data = dataSection.getBytes();
+        relocationOffsets = new int[relocations.size()];
+        relocationSymbols = new int[relocations.size()];
+        entryName = entry.getName();
+        entryOffset = code.getLabelOffset(entryName);
+
+        if (entryOffset < 0)
+        {
+            throw new CompileException("The entry label '" + entryName + "' is not in the code");
+        }
+
+        for (int i = 0; i < relocations.size(); i++)
+        {
+            X86Encoder.Relocation relocation = relocations.get(i);
+            String label = relocation.getLabel();
+            int offset = dataSection.getLabelOffset(label);
+
+            relocationSymbols[i] = DATA_SYMBOL;
+
+            if (offset < 0)
+            {
+                offset = code.getLabelOffset(label);
+                relocationSymbols[i] = TEXT_SYMBOL;
+            }
+
+            if (offset < 0)
+            {
+                throw new CompileException("Label '" + label + "' is not defined");
+            }
+
+            // the offset into the section is kept in the code, for the
+            // linker to add the section's address to
+            relocationOffsets[i] = relocation.getOffset();
+            putInt(text, relocation.getOffset(), offset);
+        }
+    }
+
+    public byte[] getText()
+    {
+        return text;
+    }
+
+    public byte[] getData()
+    {
+        return data;
+    }
+
+    // the contents of the object file
+    public byte[] toBytes()
+    {
+        byte[] symbolNames = ("\0" + entryName + "\0").getBytes(StandardCharsets.UTF_8);
+        byte[] sectionNames = SECTION_NAMES.getBytes(StandardCharsets.US_ASCII);
+
+        // the sections follow the header, each aligned as it needs
+        int textOffset = align(HEADER_SIZE, 16);
+        int dataOffset = align(textOffset + text.length, 4);
+        int sectionNamesOffset = dataOffset + data.length;
+        int symbolsOffset = align(sectionNamesOffset + sectionNames.length, 4);
+        int symbolNamesOffset = symbolsOffset + SYMBOL_COUNT * SYMBOL_SIZE;
+        int relocationsOffset = align(symbolNamesOffset + symbolNames.length, 4);
+        int sectionHeadersOffset = relocationsOffset + relocationOffsets.length * RELOCATION_SIZE;
+        int fileSize = sectionHeadersOffset + SECTION_COUNT * SECTION_HEADER_SIZE;
+
+        ByteBuffer out = ByteBuffer.allocate(fileSize).order(ByteOrder.LITTLE_ENDIAN);
+
+        // ELF header
+        out.put(new byte[] { 0x7F, 'E', 'L', 'F', 1, 1, 1 });
+        out.position(16);
+        out.putShort((short) ET_REL);
+        out.putShort((short) EM_386);
+        out.putInt(1);
+        out.putInt(0);
+        out.putInt(0);
+        out.putInt(sectionHeadersOffset);
+        out.putInt(0);
+        out.putShort((short) HEADER_SIZE);
+        out.putShort((short) 0);
+        out.putShort((short) 0);
+        out.putShort((short) SECTION_HEADER_SIZE);
+        out.putShort((short) SECTION_COUNT);
+        out.putShort((short) SHSTRTAB);
+
+        out.position(textOffset);
+        out.put(text);
+        out.position(dataOffset);
+        out.put(data);
+        out.put(sectionNames);
+
+        // symbols: the null one, the two sections and the entry label
+        out.position(symbolsOffset + SYMBOL_SIZE);
+        putSymbol(out, 0, 0, STT_SECTION, TEXT);
+        putSymbol(out, 0, 0, STT_SECTION, DATA);
+        putSymbol(out, 1, entryOffset, STB_GLOBAL << 4, TEXT);
+        out.put(symbolNames);
+
+        out.position(relocationsOffset);
+
+        for (int i = 0; i < relocationOffsets.length; i++)
+        {
+            out.putInt(relocationOffsets[i]);
+            out.putInt((relocationSymbols[i] << 8) | R_386_32);
+        }
+
+        // section headers, after the null one
+        out.position(sectionHeadersOffset + SECTION_HEADER_SIZE);
+        putSection(out, sectionNameOffset(".text"), SHT_PROGBITS, SHF_ALLOC | SHF_EXECINSTR, textOffset, text.length, 0, 0, 16, 0);
+        putSection(out, sectionNameOffset(".data"), SHT_PROGBITS, SHF_WRITE | SHF_ALLOC, dataOffset, data.length, 0, 0, 4, 0);
+        putSection(out, sectionNameOffset(".shstrtab"), SHT_STRTAB, 0, sectionNamesOffset, sectionNames.length, 0, 0, 1, 0);
+        putSection(out, sectionNameOffset(".symtab"), SHT_SYMTAB, 0, symbolsOffset, SYMBOL_COUNT * SYMBOL_SIZE, STRTAB, ENTRY_SYMBOL, 4, SYMBOL_SIZE);
+        putSection(out, sectionNameOffset(".strtab"), SHT_STRTAB, 0, symbolNamesOffset, symbolNames.length, 0, 0, 1, 0);
+        putSection(out, sectionNameOffset(".rel.text"), SHT_REL, 0, relocationsOffset, relocationOffsets.length * RELOCATION_SIZE, SYMTAB, TEXT, 4, RELOCATION_SIZE);
+
+        return out.array();
+    }
+
+    // the contents of the named section of an ELF32 object, or null if it
+    // has none by that name
+    public static byte[] readSection(byte[] object, String name)
+    {
+        ByteBuffer in = ByteBuffer.wrap(object).order(ByteOrder.LITTLE_ENDIAN);
+        int sectionHeaders = in.getInt(32);
+        int count = in.getShort(48) & 0xFFFF;
+        int namesHeader = sectionHeaders + (in.getShort(50) & 0xFFFF) * SECTION_HEADER_SIZE;
+        int names = in.getInt(namesHeader + 16);
+
+        for (int i = 0; i < count; i++)
+        {
+            int header = sectionHeaders + i * SECTION_HEADER_SIZE;
+            int nameStart = names + in.getInt(header);
+            int nameEnd = nameStart;
+
+            while (in.get(nameEnd) != 0)
+            {
+                nameEnd++;
+            }
+
+            if (new String(in.array(), nameStart, nameEnd - nameStart, StandardCharsets.US_ASCII).equals(name))
+            {
+                int offset = in.getInt(header + 16);
+                return Arrays.copyOfRange(in.array(), offset, offset + in.getInt(header + 20));
+            }
+        }
+
+        return null;
+    }
+
+    private static int sectionNameOffset(String name)
+    {
+        return SECTION_NAMES.indexOf("\0" + name + "\0") + 1;
+    }
+
+    private static void putSymbol(ByteBuffer out, int name, int value, int info, int section)
+    {
+        out.putInt(name);
+        out.putInt(value);
+        out.putInt(0);
+        out.put((byte) info);
+        out.put((byte) 0);
+        out.putShort((short) section);
+    }
+
+    private static void putSection(ByteBuffer out, int name, int type, int flags, int offset, int size,
+                                   int link, int info, int alignment, int entrySize)
+    {
+        out.putInt(name);
+        out.putInt(type);
+        out.putInt(flags);
+        out.putInt(0);
+        out.putInt(offset);
+        out.putInt(size);
+        out.putInt(link);
+        out.putInt(info);
+        out.putInt(alignment);
+        out.putInt(entrySize);
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value)
+    {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >> 8);
+        bytes[offset + 2] = (byte) (value >> 16);
+        bytes[offset + 3] = (byte) (value >> 24);
+    }
+
+    private static int align(int offset, int alignment)
+    {
+        return (offset + alignment - 1) / alignment * alignment;
+    }
+}
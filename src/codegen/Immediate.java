@@ -0,0 +1,37 @@
+package codegen;
+
+// A constant operand. Literals of the program keep the text they were written
+// with, so they are written to the assembly as they are in the source
+public class Immediate implements Operand
+{
+    private int value;
+    private String text;
+
+    public Immediate(int inValue)
+    {
+        this(inValue, null);
+    }
+
+    public Immediate(int inValue, String inText)
+    {
+        value = inValue;
+        text = inText;
+    }
+
+    public int getValue()
+    {
+        return value;
+    }
+
+    public void print(AsmEmitter out)
+    {
+        if (text != null)
+        {
+            out.emit(text);
+        }
+        else
+        {
+            out.emit(value);
+        }
+    }
+}
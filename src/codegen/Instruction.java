@@ -0,0 +1,51 @@
+package codegen;
+
+// One instruction of the generated code, with up to two operands in NASM
+// order, destination first. Instructions are never changed once made, so
+// the same one can appear in the code more than once
+public class Instruction
+{
+    private Opcode opcode;
+    private Operand first;
+    private Operand second;
+
+    public Instruction(Opcode inOpcode)
+    {
+        this(inOpcode, null, null);
+    }
+
+    public Instruction(Opcode inOpcode, Operand inFirst)
+    {
+        this(inOpcode, inFirst, null);
+    }
+
+    public Instruction(Opcode inOpcode, Operand inFirst, Operand inSecond)
+    {
+        opcode = inOpcode;
+        first = inFirst;
+        second = inSecond;
+    }
+
+    // defines a label at this point of the code
+    public static Instruction label(Label label)
+    {
+        return new Instruction(Opcode.LABEL, label);
+    }
+
+    public Opcode getOpcode()
+    {
+        return opcode;
+    }
+
+    // the first operand, or null if there is none
+    public Operand getFirst()
+    {
+        return first;
+    }
+
+    // the second operand, or null if there are less than two
+    public Operand getSecond()
+    {
+        return second;
+    }
+}
@@ -0,0 +1,28 @@
+package codegen;
+
+// A named location in the code or data. As an operand it stands for the
+// address, not for what is stored there
+public class Label implements Operand
+{
+    private String name;
+
+    public Label(String inName)
+    {
+        name = inName;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public void print(AsmEmitter out)
+    {
+        out.emit(name);
+    }
+
+    public String toString()
+    {
+        return name;
+    }
+}
@@ -0,0 +1,73 @@
+package codegen;
+
+// A memory operand, addressed by a register with an optional displacement,
+// or by a label
+public class Memory implements Operand
+{
+    private Register base;
+    private Label label;
+    private int displacement;
+    private boolean hasDisplacement;
+
+    public Memory(Register inBase)
+    {
+        base = inBase;
+        label = null;
+        displacement = 0;
+        hasDisplacement = false;
+    }
+
+    public Memory(Register inBase, int inDisplacement)
+    {
+        base = inBase;
+        label = null;
+        displacement = inDisplacement;
+        hasDisplacement = true;
+    }
+
+    public Memory(Label inLabel)
+    {
+        base = null;
+        label = inLabel;
+        displacement = 0;
+        hasDisplacement = false;
+    }
+
+    // the base register, or null if the location is a label
+    public Register getBase()
+    {
+        return base;
+    }
+
+    // the label, or null if the location is addressed by a register
+    public Label getLabel()
+    {
+        return label;
+    }
+
+    public int getDisplacement()
+    {
+        return displacement;
+    }
+
+    public void print(AsmEmitter out)
+    {
+        out.emit('[');
+
+        if (label != null)
+        {
+            label.print(out);
+        }
+        else
+        {
+            base.print(out);
+
+            if (hasDisplacement)
+            {
+                out.emit(" + ").emit(displacement);
+            }
+        }
+
+        out.emit(']');
+    }
+}
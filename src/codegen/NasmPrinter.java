@@ -0,0 +1,143 @@
+package codegen;
+
+import java.util.List;
+
+import parser.LiteralPool;
+
+// Writes generated code to an AsmEmitter as NASM source
+public class NasmPrinter
+{
+    private AsmEmitter out;
+
+    public NasmPrinter(AsmEmitter inOut)
+    {
+        out = inOut;
+    }
+
+    // starts the text section, with the label the program starts at
+    public void printTextHeader(Label entry)
+    {
+        out.emit("section .text\n");
+        out.emit("global ").emit(entry.getName()).emit("\n\n");
+    }
+
+    public void print(List<Instruction> code)
+    {
+        for (int i = 0; i < code.size(); i++)
+        {
+            print(code.get(i));
+        }
+    }
+
+    public void print(Instruction instruction)
+    {
+        if (instruction.getOpcode() == Opcode.LABEL)
+        {
+            instruction.getFirst().print(out);
+            out.emit(":\n");
+            return;
+        }
+
+        out.emit('\t').emit(instruction.getOpcode().getMnemonic());
+
+        if (instruction.getFirst() != null)
+        {
+            out.emit(' ');
+            instruction.getFirst().print(out);
+        }
+
+        if (instruction.getSecond() != null)
+        {
+            out.emit(", ");
+            instruction.getSecond().print(out);
+        }
+
+        out.emit('\n');
+    }
+
+    // lays out the literals in the order of their IDs, which are also their
+    // labels. A string stored at the end of another one is labeled after all
+    // the literals, as an offset into that one
+    public void printDataSection(LiteralPool literals, int pointerDataSize)
+    {
+        out.emit("section .data\n");
+
+        for (int id = 0; id < literals.size(); id++)
+        {
+            if (literals.getKind(id) == LiteralPool.FLOAT)
+            {
+                out.emit(AssemblyGenerator.LITERAL_LABEL).emit(id).emit(" dd ").emit(literals.getValue(id)).emit('\n');
+            }
+            else if (literals.getOwner(id) == id)
+            {
+                out.emit(AssemblyGenerator.LITERAL_LABEL).emit(id).emit(" db ");
+                printStringBytes(literals.getValue(id));
+                out.emit('\n');
+            }
+        }
+
+        for (int id = 0; id < literals.size(); id++)
+        {
+            if (literals.getKind(id) == LiteralPool.STRING && literals.getOwner(id) != id)
+            {
+                out.emit(AssemblyGenerator.LITERAL_LABEL).emit(id).emit(" equ ");
+                out.emit(AssemblyGenerator.LITERAL_LABEL).emit(literals.getOwner(id));
+                out.emit(" + ").emit(literals.getOwnerOffset(id)).emit('\n');
+            }
+        }
+
+        out.emit(AssemblyGenerator.PTR_DATA).emit(" db ").emit(pointerDataSize).emit(" dup(0)\n");
+        // out.emit(AssemblyGenerator.BUFFER).emit(" db ").emit(AssemblyGenerator.BUFFER_SIZE).emit(" dup(0)\n");
+        out.emit(AssemblyGenerator.FLOAT_NEG_MASK).emit(" dd 0x80000000\n");
+    }
+
+    public void printBlankLine()
+    {
+        out.emit('\n');
+    }
+
+    public void flush()
+    {
+        out.flush();
+    }
+
+    // writes a string as the comma separated bytes of a db, null-terminated
+    private void printStringBytes(String inputString)
+    {
+        // Iterate through each character in the input string
+        for (int i = 0; i < inputString.length(); i++)
+        {
+            char c = inputString.charAt(i);
+
+            switch (c) 
+            {
+                case '\n':
+                out.emit("0x0A, ");
+                break;
+
+                case '\t':
+                out.emit("0x09, ");
+                break;
+
+                case '\\':
+                out.emit("0x5C, ");
+                break;
+
+                case '\"':
+                out.emit("0x22, ");
+                break;
+
+                case '\'':
+                out.emit("0x27, ");
+                break;
+
+                default:
+                out.emit('\'').emit(c).emit("', ");
+                break;
+            }
+        }
+        
+        // Append 0 at the end for null-termination
+        out.emit('0');
+    }
+}
@@ -0,0 +1,41 @@
+package codegen;
+
+// The machine instructions the code generator uses, by their NASM mnemonic.
+// LABEL is not an instruction, it defines the label that is its operand at
+// that point of the code
+public enum Opcode
+{
+    MOV,
+    LEA,
+    PUSH,
+    POP,
+    ADD,
+    SUB,
+    IMUL,
+    IDIV,
+    CDQ,
+    NEG,
+    INT,
+
+    MOVSS,
+    ADDSS,
+    SUBSS,
+    MULSS,
+    DIVSS,
+    XORPS,
+    CVTSI2SS,
+
+    LABEL;
+
+    private String mnemonic;
+
+    private Opcode()
+    {
+        mnemonic = name().toLowerCase();
+    }
+
+    public String getMnemonic()
+    {
+        return mnemonic;
+    }
+}
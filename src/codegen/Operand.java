@@ -0,0 +1,9 @@
+package codegen;
+
+// An operand of an instruction: a register, an immediate, a memory location
+// or a label
+public interface Operand
+{
+    // writes the operand in NASM syntax
+    void print(AsmEmitter out);
+}
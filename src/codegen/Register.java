@@ -0,0 +1,53 @@
+package codegen;
+
+// The registers the code generator uses, with the number each is encoded
+// with in machine code
+public enum Register implements Operand
+{
+    EAX(0),
+    EBX(3),
+    ECX(1),
+    EDX(2),
+    ESP(4),
+    EBP(5),
+    BL(3),
+
+    XMM0(0),
+    XMM5(5),
+    XMM6(6),
+    XMM7(7);
+
+    private String nasmName;
+    private int number;
+
+    private Register(int inNumber)
+    {
+        nasmName = name().toLowerCase();
+        number = inNumber;
+    }
+
+    public int getNumber()
+    {
+        return number;
+    }
+
+    public boolean isByte()
+    {
+        return this == BL;
+    }
+
+    public boolean isXmm()
+    {
+        return this.compareTo(XMM0) >= 0;
+    }
+
+    public void print(AsmEmitter out)
+    {
+        out.emit(nasmName);
+    }
+
+    public String toString()
+    {
+        return nasmName;
+    }
+}
@@ -0,0 +1,252 @@
+package codegen;
+
+import java.util.Arrays;
+import java.util.List;
+
+import parser.CharDeclaration;
+import parser.CharReassignment;
+import parser.ExitStatement;
+import parser.ExpressionArena;
+import parser.NumDeclaration;
+import parser.NumExpression;
+import parser.NumReassignment;
+import parser.PrintStatement;
+import parser.Reassignment;
+import parser.Statement;
+import parser.StringDeclaration;
+import parser.StringExpression;
+import parser.StringReassignment;
+import tokenizer.DataType;
+import tokenizer.Token;
+import tokenizer.TokenType;
+
+// Lays out the variables of a program on the stack, and binds every
+// identifier in it to the frame offset of its variable, so the assembly
+// generator never has to look one up. Nothing is generated here.
+public class Resolver implements StatementVisitor
+{
+    private TableStack tableStack;
+
+    public Resolver()
+    {
+        tableStack = new TableStack();
+        tableStack.push(new SymbolTable());
+    }
+
+    public void resolveProgram(List<Statement> program) throws CompileException
+    {
+        tableStack = new TableStack();
+        tableStack.push(new SymbolTable());
+
+        for (int i = 0; i < program.size(); i++)
+        {
+            program.get(i).accept(this);
+        }
+    }
+
+    // resolves the next statement of a program, after the ones resolved so far
+    public void resolveStatement(Statement statement) throws CompileException
+    {
+        statement.accept(this);
+    }
+
+    public void visit(NumDeclaration stmt) throws CompileException
+    {
+        NumExpression expression = stmt.getExpression();
+
+        resolveNumExpression(expression, expression.isFloat());
+
+        declare(stmt.getIdentifier(), stmt.getDataType());
+    }
+
+    public void visit(CharDeclaration stmt) throws CompileException
+    {
+        resolveNumExpression(stmt.getExpression(), false);
+        declare(stmt.getIdentifier(), DataType.CHAR);
+    }
+
+    public void visit(StringDeclaration stmt) throws CompileException
+    {
+        resolveStrExpression(stmt.getExpression());
+        VarInfo info = declare(stmt.getIdentifier(), DataType.STRING);
+        updateStringLength(info, stmt.getIdentifier(), stmt.getExpression());
+    }
+
+    public void visit(NumReassignment stmt) throws CompileException
+    {
+        resolveTarget(stmt);
+        resolveNumExpression(stmt.getExpression(), stmt.getExpression().isFloat());
+    }
+
+    public void visit(CharReassignment stmt) throws CompileException
+    {
+        resolveTarget(stmt);
+        resolveNumExpression(stmt.getExpression(), false);
+    }
+
+    public void visit(StringReassignment stmt) throws CompileException
+    {
+        VarInfo info = resolveTarget(stmt);
+        resolveStrExpression(stmt.getExpression());
+        updateStringLength(info, stmt.getIdentifier(), stmt.getExpression());
+    }
+
+    public void visit(PrintStatement stmt) throws CompileException
+    {
+        StringExpression expr = stmt.getExpression();
+        Token exprToken = expr.getToken();
+
+        if (exprToken.getType() == TokenType.IDENTIFIER)
+        {
+            TableStack.Slot slot = findVariable(exprToken);
+            VarInfo info = slot.getVarInfo();
+
+            if (info.getStrSize() == VarInfo.NO_STR_SIZE)
+            {
+                throw new CompileException("Length of the string in '" + exprToken.getValue() + "' is not known");
+            }
+
+            expr.setStrSize(info.getStrSize());
+            expr.setOffset(slot.getOffset());
+        }
+    }
+
+    public void visit(ExitStatement stmt) throws CompileException
+    {
+        resolveNumExpression(stmt.getExpression(), false);
+    }
+
+    private VarInfo declare(Token identifier, DataType type) throws CompileException
+    {
+        if (tableStack.lookup(identifier.getSymbolId()) != null)
+        {
+            throw new CompileException("Identifier " + identifier.getValue() + " already in use");
+        }
+
+        tableStack.peek().addIdentifier(type, identifier, type.getSize());
+        return tableStack.peek().getVarInfo(identifier.getSymbolId());
+    }
+
+    private VarInfo resolveTarget(Reassignment stmt) throws CompileException
+    {
+        TableStack.Slot slot = findVariable(stmt.getIdentifier());
+
+        stmt.setOffset(slot.getOffset());
+        stmt.setVariableType(slot.getVarInfo().getType());
+        return slot.getVarInfo();
+    }
+
+    private TableStack.Slot findVariable(Token identifier) throws CompileException
+    {
+        TableStack.Slot slot = tableStack.lookup(identifier.getSymbolId());
+
+        if (slot == null)
+        {
+            throw new CompileException("Unknown identifier: " + identifier.getValue());
+        }
+
+        return slot;
+    }
+
+    private void resolveStrExpression(StringExpression expr) throws CompileException
+    {
+        Token token = expr.getToken();
+
+        if (token.getType() == TokenType.IDENTIFIER)
+        {
+            expr.setOffset(findVariable(token).getOffset());
+        }
+    }
+
+    // binds the identifiers of an expression, which must all be numbers
+    // that can be loaded in the given mode. Nodes can be shared with other
+    // expressions, so the tree is walked from its root, left to right, to
+    // check every identifier where it is used. Constant subtrees are skipped.
+    // The identifiers are reached in the order they were written, so each
+    // one's use in the arena is where an error in it is reported
+    private void resolveNumExpression(NumExpression expr, boolean floatMode) throws CompileException
+    {
+        ExpressionArena arena = expr.getArena();
+        int[] nodes = new int[16];
+        int depth = 1;
+        int use = expr.getFirstUse();
+
+        nodes[0] = expr.getRoot();
+
+        while (depth > 0)
+        {
+            depth--;
+            int node = nodes[depth];
+
+            if (depth + 2 >= nodes.length)
+            {
+                nodes = Arrays.copyOf(nodes, nodes.length * 2);
+            }
+
+            if (arena.isConstant(node))
+            {
+                continue;
+            }
+
+            switch (arena.getKind(node))
+            {
+                case ExpressionArena.BINARY:
+                nodes[depth] = arena.getRight(node);
+                nodes[depth + 1] = arena.getLeft(node);
+                depth += 2;
+                break;
+
+                case ExpressionArena.LEAF:
+                resolveIdentifier(arena, node, arena.getUse(use), floatMode);
+                use++;
+                break;
+
+                default:
+                nodes[depth] = arena.getOperand(node);
+                depth++;
+                break;
+            }
+        }
+    }
+
+    private void resolveIdentifier(ExpressionArena arena, int leaf, Token token, boolean floatMode) throws CompileException
+    {
+        TableStack.Slot slot = tableStack.lookup(token.getSymbolId());
+
+        if (slot == null)
+        {
+            throw new CompileException("Unknown identifier: '" + token.getValue() + "'", token);
+        }
+
+        DataType type = slot.getVarInfo().getType();
+
+        if (floatMode && !type.isInteger() && !type.isFloat())
+        {
+            throw new CompileException("Expected identifier for number, got one for type " + type, token);
+        }
+
+        if (!floatMode && !type.isInteger())
+        {
+            throw new CompileException("Expected identifier for an integer or character, got one for type " + type, token);
+        }
+
+        arena.bindVariable(leaf, type, slot.getOffset());
+    }
+
+    private void updateStringLength(VarInfo info, Token identifier, StringExpression expr) throws CompileException
+    {
+        switch (expr.getToken().getType())
+        {
+            case LITERAL_STR:
+            info.setStrSize(expr.getToken().getValue().length());
+            break;
+
+            // the variable keeps the length it had
+            case IDENTIFIER:
+            break;
+
+            default:
+            throw new CompileException("Could not update string length of " + identifier.getValue());
+        }
+    }
+}
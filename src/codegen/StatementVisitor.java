@@ -10,12 +10,12 @@ import parser.PrintStatement;
 import parser.ExitStatement;
 
 public interface StatementVisitor {
-    String visit(NumDeclaration stmt) throws CompileException;
-    String visit(CharDeclaration stmt) throws CompileException;
-    String visit(StringDeclaration stmt) throws CompileException;
-    String visit(NumReassignment stmt) throws CompileException;
-    String visit(CharReassignment stmt) throws CompileException;
-    String visit(StringReassignment stmt) throws CompileException;
-    String visit(PrintStatement stmt) throws CompileException;
-    String visit(ExitStatement stmt) throws CompileException;
+    void visit(NumDeclaration stmt) throws CompileException;
+    void visit(CharDeclaration stmt) throws CompileException;
+    void visit(StringDeclaration stmt) throws CompileException;
+    void visit(NumReassignment stmt) throws CompileException;
+    void visit(CharReassignment stmt) throws CompileException;
+    void visit(StringReassignment stmt) throws CompileException;
+    void visit(PrintStatement stmt) throws CompileException;
+    void visit(ExitStatement stmt) throws CompileException;
 }
@@ -1,43 +1,51 @@
 package codegen;
 
-import java.util.Map;
-import java.util.HashMap;
+import java.util.Arrays;
 
+import tokenizer.DataType;
+import tokenizer.Token;
+
+// Variables of one scope, indexed by the symbol ID their identifier was
+// interned to, so lookups never hash the identifier's name.
 public class SymbolTable {
-    private Map<String, VarInfo> table;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private VarInfo[] table;
+    private String[] names;
     private int stackSize;
     private int allDataSize;
 
     public SymbolTable()
     {
-        table = new HashMap<String, VarInfo>();
+        table = new VarInfo[INITIAL_CAPACITY];
+        names = new String[INITIAL_CAPACITY];
         stackSize = 0;
         allDataSize = 0;
     }
 
-    public boolean identifierExists(String identifier)
+    public boolean identifierExists(int symbolId)
     {
-        return table.containsKey(identifier);
+        return symbolId >= 0 && symbolId < table.length && table[symbolId] != null;
     }
 
-    public boolean addIdentifier(String type, String identifier)
+    public boolean addIdentifier(DataType type, Token identifier)
     {
-        if (!identifierExists(identifier))
+        if (!identifierExists(identifier.getSymbolId()))
         {
             VarInfo info = new VarInfo(type);
-            table.put(identifier, info);
+            put(identifier, info);
             return true;
         }
 
         return false;
     }
 
-    public boolean addIdentifier(String type, String identifier, int size)
+    public boolean addIdentifier(DataType type, Token identifier, int size)
     {
-        if (!identifierExists(identifier))
+        if (!identifierExists(identifier.getSymbolId()))
         {
             VarInfo info = new VarInfo(type, size, size + stackSize);
-            table.put(identifier, info);
+            put(identifier, info);
             stackSize += size;
             return true;
         }
@@ -45,11 +53,38 @@ public class SymbolTable {
         return false;
     }
 
-    public boolean makePointer(String identifier, String primitive, int unitSize, int totalSize)
+    // takes a variable out of the table and returns it, or null if there is
+    // none. Its stack space and data are given back if they were the last
+    // allocated, so removing and adding the same variable does not grow them
+    public VarInfo removeIdentifier(int symbolId)
+    {
+        if (identifierExists(symbolId))
+        {
+            VarInfo info = table[symbolId];
+            table[symbolId] = null;
+            names[symbolId] = null;
+
+            if (info.getOffset() == stackSize)
+            {
+                stackSize -= info.getSize();
+            }
+
+            if (info.isPointer() && info.getDataOffset() + info.getTotalSize() == allDataSize)
+            {
+                allDataSize -= info.getTotalSize();
+            }
+
+            return info;
+        }
+
+        return null;
+    }
+
+    public boolean makePointer(int symbolId, DataType primitive, int unitSize, int totalSize)
     {
-        if (identifierExists(identifier))
+        if (identifierExists(symbolId))
         {
-            VarInfo info = table.get(identifier);
+            VarInfo info = table[symbolId];
             info.addPointerInfo(primitive, allDataSize, unitSize, totalSize);
             allDataSize += totalSize;
             return true;
@@ -68,41 +103,41 @@ public class SymbolTable {
         return allDataSize;
     }
 
-    public VarInfo getVarInfo(String identifier)
+    public VarInfo getVarInfo(int symbolId)
     {
-        if (identifierExists(identifier))
+        if (identifierExists(symbolId))
         {
-            return table.get(identifier);
+            return table[symbolId];
         }
 
         return null;
     }
 
-    public int getStackOffset(String identifier)
+    public int getStackOffset(int symbolId)
     {
-        if (identifierExists(identifier))
+        if (identifierExists(symbolId))
         {
-            return table.get(identifier).getOffset();
+            return table[symbolId].getOffset();
         }
 
         return -1;
     }
 
-    public int getDataOffset(String identifier)
+    public int getDataOffset(int symbolId)
     {
-        if (identifierExists(identifier))
+        if (identifierExists(symbolId))
         {
-            return table.get(identifier).getDataOffset();
+            return table[symbolId].getDataOffset();
         }
 
         return -1;
     }
 
-    public String getIdentifierType(String identifier)
+    public DataType getIdentifierType(int symbolId)
     {
-        if (table.containsKey(identifier))
+        if (identifierExists(symbolId))
         {
-            return table.get(identifier).getType();
+            return table[symbolId].getType();
         }
 
         return null;
@@ -113,7 +148,35 @@ public class SymbolTable {
         String s = "";
         s += "Total stack size: " + stackSize + "\n";
         s += "Total data size: " + allDataSize + "\n";
-        s += table.toString();
+        s += "{";
+
+        boolean first = true;
+
+        for (int i = 0; i < table.length; i++)
+        {
+            if (table[i] != null)
+            {
+                s += (first ? "" : ", ") + names[i] + "=" + table[i].toString();
+                first = false;
+            }
+        }
+
+        s += "}";
         return s;
     }
+
+    private void put(Token identifier, VarInfo info)
+    {
+        int symbolId = identifier.getSymbolId();
+
+        if (symbolId >= table.length)
+        {
+            int capacity = Math.max(symbolId + 1, table.length * 2);
+            table = Arrays.copyOf(table, capacity);
+            names = Arrays.copyOf(names, capacity);
+        }
+
+        table[symbolId] = info;
+        names[symbolId] = identifier.getValue();
+    }
 }
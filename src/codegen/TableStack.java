@@ -27,8 +27,10 @@ public class TableStack
         stack.push(newTable);
     }
 
-    // gets the offset from current base pointer of a certain variable, or -1 if not found
-    public int getOffset(String identifier)
+    // finds a variable and its offset from the current base pointer in one
+    // walk of the stack, or returns null if it is not found. Any offset can
+    // be a variable's, so a missing one is never told by its offset
+    public Slot lookup(int symbolId)
     {
         Iterator<SymbolTable> i = stack.iterator();
         SymbolTable current;
@@ -37,51 +39,39 @@ public class TableStack
         while (i.hasNext())
         {
             current = i.next();
+            VarInfo info = current.getVarInfo(symbolId);
 
-            if (current.identifierExists(identifier))
+            if (info != null)
             {
-                return totalSize - current.getStackOffset(identifier);
+                return new Slot(info, totalSize - info.getOffset());
             }
 
             totalSize += current.getStackSize();
         }
 
-        return -1;
+        return null;
     }
 
-    public boolean identifierInUse(String identifier)
+    // a variable found on the stack, and where it is in the frame
+    public static class Slot
     {
-        Iterator<SymbolTable> i = stack.iterator();
-        SymbolTable current;
+        private VarInfo info;
+        private int offset;
 
-        while (i.hasNext())
+        Slot(VarInfo inInfo, int inOffset)
         {
-            current = i.next();
-
-            if (current.identifierExists(identifier))
-            {
-                return true;
-            }
+            info = inInfo;
+            offset = inOffset;
         }
 
-        return false;
-    }
-
-    public VarInfo getVarInfo(String identifier)
-    {
-        Iterator<SymbolTable> i = stack.iterator();
-        SymbolTable current;
-
-        while (i.hasNext())
+        public VarInfo getVarInfo()
         {
-            current = i.next();
-
-            if (current.identifierExists(identifier))
-            {
-                return current.getVarInfo(identifier);
-            }
+            return info;
         }
 
-        return null;
+        public int getOffset()
+        {
+            return offset;
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,53 +1,42 @@
 package codegen;
 
-import java.util.Map;
-import java.util.HashMap;
+import tokenizer.DataType;
 
+// What is known of one variable. Every attribute is a field of its own, so a
+// variable is one small object, and the attributes of pointers are only
+// allocated for variables that are made pointers.
 public class VarInfo {
+    public static final int NO_STR_SIZE = -1;
+
     // attributes for all variables
     private int offset;
     private int size;
-    private String type;
-    private boolean isPointer;
-    private Map<String, String> metaData;
+    private DataType type;
+
+    // the length of the string a str variable was last given, or NO_STR_SIZE
+    // if it is not known
+    private int strSize;
 
-    // additional pointer attributes
-    private String primitiveDataType;
-    private int dataOffset;
-    private int unitDataSize;
-    private int totalDataSize;
+    // additional pointer attributes, or null if this is not a pointer
+    private PointerInfo pointer;
 
-    public VarInfo(String inType)
+    public VarInfo(DataType inType)
     {
-        type = inType;
-        size = 0;
-        offset = 0;
-        isPointer = false;
-        primitiveDataType = "";
-        unitDataSize = 0;
-        totalDataSize = 0;
-        metaData = new HashMap<String, String>();
+        this(inType, 0, 0);
     }
 
-    public VarInfo(String inType, int inSize, int inOffset)
+    public VarInfo(DataType inType, int inSize, int inOffset)
     {
         type = inType;
         size = inSize;
         offset = inOffset;
-        isPointer = false;
-        primitiveDataType = "";
-        unitDataSize = 0;
-        totalDataSize = 0;
-        metaData = new HashMap<String, String>();
+        strSize = NO_STR_SIZE;
+        pointer = null;
     }
 
-    public void addPointerInfo(String primitive, int offset, int unitSize, int totalSize)
+    public void addPointerInfo(DataType primitive, int offset, int unitSize, int totalSize)
     {
-        isPointer = true;
-        primitiveDataType = primitive;
-        dataOffset = offset;
-        unitDataSize = unitSize;
-        totalDataSize = totalSize;
+        pointer = new PointerInfo(primitive, offset, unitSize, totalSize);
     }
 
     public int getSize()
@@ -60,21 +49,31 @@ public class VarInfo {
         return offset;
     }
 
-    public String getType()
+    public DataType getType()
     {
         return type;
     }
 
+    public int getStrSize()
+    {
+        return strSize;
+    }
+
+    public void setStrSize(int inStrSize)
+    {
+        strSize = inStrSize;
+    }
+
     public boolean isPointer()
     {
-        return isPointer;
+        return pointer != null;
     }
 
-    public String getPrimitive()
+    public DataType getPrimitive()
     {
-        if (isPointer)
+        if (isPointer())
         {
-            return primitiveDataType;
+            return pointer.primitiveDataType;
         }
 
         return null;
@@ -84,7 +83,7 @@ public class VarInfo {
     {
         if (isPointer())
         {
-            return dataOffset;
+            return pointer.dataOffset;
         }
 
         return -1;
@@ -92,9 +91,9 @@ public class VarInfo {
 
     public int getUnitSize()
     {
-        if (isPointer)
+        if (isPointer())
         {
-            return unitDataSize;
+            return pointer.unitDataSize;
         }
 
         return -1;
@@ -102,9 +101,9 @@ public class VarInfo {
 
     public int getTotalSize()
     {
-        if (isPointer)
+        if (isPointer())
         {
-            return totalDataSize;
+            return pointer.totalDataSize;
         }
 
         return -1;
@@ -114,30 +113,40 @@ public class VarInfo {
     {
         String s = "";
 
-        if (isPointer)
+        if (isPointer())
         {
             s += "\nPOINTER\n";
-            s += "Primitive type: " + primitiveDataType;
-            s += ", Unit size: " + unitDataSize;
-            s += ", Total data size: " + totalDataSize; 
-            s += ", Data offset: " + dataOffset;
+            s += "Primitive type: " + pointer.primitiveDataType;
+            s += ", Unit size: " + pointer.unitDataSize;
+            s += ", Total data size: " + pointer.totalDataSize;
+            s += ", Data offset: " + pointer.dataOffset;
         }
 
         s += "\nType: " + type;
         s += ", Offset: " + offset;
         s += ", Size: " + size + "\n";
-        s += "Metadata: " + metaData.toString() + "\n";
+
+        if (strSize != NO_STR_SIZE)
+        {
+            s += "String size: " + strSize + "\n";
+        }
 
         return s;
     }
 
-    public void updateMetaData(String key, String value)
+    private static class PointerInfo
     {
-        metaData.put(key, value);
-    }
+        private DataType primitiveDataType;
+        private int dataOffset;
+        private int unitDataSize;
+        private int totalDataSize;
 
-    public String getMetaData(String key)
-    {
-        return metaData.get(key);
+        PointerInfo(DataType primitive, int offset, int unitSize, int totalSize)
+        {
+            primitiveDataType = primitive;
+            dataOffset = offset;
+            unitDataSize = unitSize;
+            totalDataSize = totalSize;
+        }
     }
 }
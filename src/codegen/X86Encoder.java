@@ -0,0 +1,391 @@
+package codegen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+// Encodes instructions into 32-bit x86 machine code. Only the forms the code
+// generator makes are known, and each is encoded the way NASM encodes it, so
+// the code is the same as NASM's. Labels defined in the code are given their
+// offset in it. An address of a label that is not in the code is written as
+// zero and recorded as a relocation, to be filled in once the data is laid out
+public class X86Encoder
+{
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private static final int MOD_INDIRECT = 0;
+    private static final int MOD_DISP8 = 1;
+    private static final int MOD_DISP32 = 2;
+    private static final int MOD_REGISTER = 3;
+    private static final int RM_SIB = 4;
+    private static final int RM_DISP32 = 5;
+    private static final int SIB_ESP = 0x24;
+
+    private static final int PREFIX_SSE = 0xF3;
+    private static final int ESCAPE = 0x0F;
+
+    private byte[] code;
+    private int size;
+    private HashMap<String, Integer> labels;
+    private List<Relocation> relocations;
+
+    public X86Encoder()
+    {
+        code = new byte[INITIAL_CAPACITY];
+        size = 0;
+        labels = new HashMap<String, Integer>();
+        relocations = new ArrayList<Relocation>();
+    }
+
+    public void encode(List<Instruction> instructions) throws CompileException
+    {
+        for (int i = 0; i < instructions.size(); i++)
+        {
+            encode(instructions.get(i));
+        }
+    }
+
+    public void encode(Instruction instruction) throws CompileException
+    {
+        Operand first = instruction.getFirst();
+        Operand second = instruction.getSecond();
+
+        switch (instruction.getOpcode())
+        {
+            case LABEL:
+            labels.put(((Label) first).getName(), size);
+            break;
+
+            case MOV:
+            if (first instanceof Register && second instanceof Immediate && !((Register) first).isByte())
+            {
+                put(0xB8 + ((Register) first).getNumber());
+                putInt(((Immediate) second).getValue());
+            }
+            else if (first instanceof Register && second instanceof Memory)
+            {
+                putModRM(0x8B, getRegister(first, instruction), second, instruction);
+            }
+            else if (second instanceof Register && ((Register) second).isByte() && first instanceof Memory)
+            {
+                putModRM(0x88, (Register) second, first, instruction);
+            }
+            else if (second instanceof Register)
+            {
+                putModRM(0x89, getRegister(second, instruction), first, instruction);
+            }
+            else
+            {
+                throw unsupported(instruction);
+            }
+            break;
+
+            case LEA:
+            if (!(first instanceof Register) || second instanceof Register || second instanceof Immediate)
+            {
+                throw unsupported(instruction);
+            }
+
+            putModRM(0x8D, (Register) first, second, instruction);
+            break;
+
+            case PUSH:
+            put(0x50 + getRegister(first, instruction).getNumber());
+            break;
+
+            case POP:
+            put(0x58 + getRegister(first, instruction).getNumber());
+            break;
+
+            case ADD:
+            putArithmetic(0x01, 0, instruction);
+            break;
+
+            case SUB:
+            putArithmetic(0x29, 5, instruction);
+            break;
+
+            case IMUL:
+            put(ESCAPE);
+            putModRM(0xAF, getRegister(first, instruction), second, instruction);
+            break;
+
+            case IDIV:
+            putModRM(0xF7, 7, first, instruction);
+            break;
+
+            case NEG:
+            putModRM(0xF7, 3, first, instruction);
+            break;
+
+            case CDQ:
+            put(0x99);
+            break;
+
+            case INT:
+            put(0xCD);
+            put(getImmediate(first, instruction));
+            break;
+
+            case MOVSS:
+            put(PREFIX_SSE);
+            put(ESCAPE);
+
+            if (first instanceof Register)
+            {
+                putModRM(0x10, getXmm(first, instruction), second, instruction);
+            }
+            else
+            {
+                putModRM(0x11, getXmm(second, instruction), first, instruction);
+            }
+            break;
+
+            case ADDSS:
+            putScalar(0x58, instruction);
+            break;
+
+            case SUBSS:
+            putScalar(0x5C, instruction);
+            break;
+
+            case MULSS:
+            putScalar(0x59, instruction);
+            break;
+
+            case DIVSS:
+            putScalar(0x5E, instruction);
+            break;
+
+            case XORPS:
+            put(ESCAPE);
+            putModRM(0x57, getXmm(first, instruction), second, instruction);
+            break;
+
+            case CVTSI2SS:
+            put(PREFIX_SSE);
+            put(ESCAPE);
+            putModRM(0x2A, getXmm(first, instruction), second, instruction);
+            break;
+
+            default:
+            throw unsupported(instruction);
+        }
+    }
+
+    // the code encoded so far
+    public byte[] getCode()
+    {
+        return Arrays.copyOf(code, size);
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    // the offset of a label defined in the code, or -1 if it is not
+    public int getLabelOffset(String name)
+    {
+        Integer offset = labels.get(name);
+        return offset == null ? -1 : offset;
+    }
+
+    public List<Relocation> getRelocations()
+    {
+        return relocations;
+    }
+
+    // add and sub, with a register or an immediate as their source. An
+    // immediate that fits a byte is encoded as one
+    private void putArithmetic(int opcode, int extension, Instruction instruction) throws CompileException
+    {
+        Register destination = getRegister(instruction.getFirst(), instruction);
+
+        if (instruction.getSecond() instanceof Immediate)
+        {
+            int value = ((Immediate) instruction.getSecond()).getValue();
+
+            if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE)
+            {
+                putModRM(0x83, extension, destination, instruction);
+                put(value);
+            }
+            else
+            {
+                putModRM(0x81, extension, destination, instruction);
+                putInt(value);
+            }
+        }
+        else
+        {
+            putModRM(opcode, getRegister(instruction.getSecond(), instruction), destination, instruction);
+        }
+    }
+
+    // the scalar single SSE arithmetic, xmm register destination
+    private void putScalar(int opcode, Instruction instruction) throws CompileException
+    {
+        put(PREFIX_SSE);
+        put(ESCAPE);
+        putModRM(opcode, getXmm(instruction.getFirst(), instruction), instruction.getSecond(), instruction);
+    }
+
+    private void putModRM(int opcode, Register reg, Operand rm, Instruction instruction) throws CompileException
+    {
+        putModRM(opcode, reg.getNumber(), rm, instruction);
+    }
+
+    // writes the opcode and the ModR/M byte with its SIB byte and
+    // displacement, for a register field and a register or memory operand
+    private void putModRM(int opcode, int reg, Operand rm, Instruction instruction) throws CompileException
+    {
+        put(opcode);
+
+        if (rm instanceof Register)
+        {
+            put(modRM(MOD_REGISTER, reg, ((Register) rm).getNumber()));
+        }
+        else if (rm instanceof Label)
+        {
+            // lea takes the address of a label as a memory operand
+            putAbsolute(reg, (Label) rm);
+        }
+        else if (rm instanceof Memory && ((Memory) rm).getLabel() != null)
+        {
+            putAbsolute(reg, ((Memory) rm).getLabel());
+        }
+        else if (rm instanceof Memory)
+        {
+            Memory memory = (Memory) rm;
+            int base = memory.getBase().getNumber();
+            int displacement = memory.getDisplacement();
+            int mod;
+
+            // ebp can only be addressed with a displacement
+            if (displacement == 0 && memory.getBase() != Register.EBP)
+            {
+                mod = MOD_INDIRECT;
+            }
+            else if (displacement >= Byte.MIN_VALUE && displacement <= Byte.MAX_VALUE)
+            {
+                mod = MOD_DISP8;
+            }
+            else
+            {
+                mod = MOD_DISP32;
+            }
+
+            put(modRM(mod, reg, base));
+
+            // esp can only be addressed through a SIB byte
+            if (memory.getBase() == Register.ESP)
+            {
+                put(SIB_ESP);
+            }
+
+            if (mod == MOD_DISP8)
+            {
+                put(displacement);
+            }
+            else if (mod == MOD_DISP32)
+            {
+                putInt(displacement);
+            }
+        }
+        else
+        {
+            throw unsupported(instruction);
+        }
+    }
+
+    private void putAbsolute(int reg, Label label)
+    {
+        put(modRM(MOD_INDIRECT, reg, RM_DISP32));
+        relocations.add(new Relocation(size, label.getName()));
+        putInt(0);
+    }
+
+    private static int modRM(int mod, int reg, int rm)
+    {
+        return (mod << 6) | (reg << 3) | rm;
+    }
+
+    private Register getRegister(Operand operand, Instruction instruction) throws CompileException
+    {
+        if (!(operand instanceof Register) || ((Register) operand).isXmm() || ((Register) operand).isByte())
+        {
+            throw unsupported(instruction);
+        }
+
+        return (Register) operand;
+    }
+
+    private Register getXmm(Operand operand, Instruction instruction) throws CompileException
+    {
+        if (!(operand instanceof Register) || !((Register) operand).isXmm())
+        {
+            throw unsupported(instruction);
+        }
+
+        return (Register) operand;
+    }
+
+    private int getImmediate(Operand operand, Instruction instruction) throws CompileException
+    {
+        if (!(operand instanceof Immediate))
+        {
+            throw unsupported(instruction);
+        }
+
+        return ((Immediate) operand).getValue();
+    }
+
+    private static CompileException unsupported(Instruction instruction)
+    {
+        return new CompileException("Cannot encode this form of '" + instruction.getOpcode().getMnemonic() + "'");
+    }
+
+    private void put(int b)
+    {
+        if (size == code.length)
+        {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+
+        code[size] = (byte) b;
+        size++;
+    }
+
+    private void putInt(int value)
+    {
+        put(value);
+        put(value >> 8);
+        put(value >> 16);
+        put(value >> 24);
+    }
+
+    // a 32-bit address in the code that is to be set to a label's
+    public static class Relocation
+    {
+        private int offset;
+        private String label;
+
+        Relocation(int inOffset, String inLabel)
+        {
+            offset = inOffset;
+            label = inLabel;
+        }
+
+        public int getOffset()
+        {
+            return offset;
+        }
+
+        public String getLabel()
+        {
+            return label;
+        }
+    }
+}
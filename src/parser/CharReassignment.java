@@ -18,11 +18,11 @@ public class CharReassignment extends Reassignment {
         return expression;
     }
 
-    public String accept(StatementVisitor visitor) throws CompileException
+    public void accept(StatementVisitor visitor) throws CompileException
     {
         try
         {
-            return visitor.visit(this);
+            visitor.visit(this);
         }
         catch (CompileException exception)
         {
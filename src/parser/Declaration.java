@@ -1,14 +1,17 @@
 package parser;
 
+import tokenizer.DataType;
 import tokenizer.Token;
 
 public abstract class Declaration implements Statement {
     private Token typeToken;
     private Token identifierToken;
+    private DataType dataType;
 
     public void setType(Token type)
     {
         typeToken = type;
+        dataType = DataType.fromKeyword(type.getValue());
     }
 
     public void setIdentifier(Token identifier)
@@ -21,6 +24,12 @@ public abstract class Declaration implements Statement {
         return typeToken;
     }
 
+    // the type named by the type token
+    public DataType getDataType()
+    {
+        return dataType;
+    }
+
     public Token getIdentifier()
     {
         return identifierToken;
@@ -22,11 +22,11 @@ public class ExitStatement implements Statement
         return expression;
     }
 
-    public String accept(StatementVisitor visitor) throws CompileException
+    public void accept(StatementVisitor visitor) throws CompileException
     {
         try
         {
-            return visitor.visit(this);
+            visitor.visit(this);
         }
         catch (CompileException exception)
         {
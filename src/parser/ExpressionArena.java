@@ -0,0 +1,501 @@
+package parser;
+
+import java.util.Arrays;
+
+import tokenizer.DataType;
+import tokenizer.Token;
+import tokenizer.TokenType;
+
+// Numeric expression nodes of one parse, stored as parallel arrays and referred
+// to by index. A node is a literal or identifier, a negation, a parenthesized
+// group or a binary operation, and only the leaves keep their token. The type
+// of every node is worked out once, when it is added, and kept as the ordinal
+// of its DataType. Nodes are hash-consed: adding a node equal to one already
+// in the arena, with the same operands, returns that node instead, so every
+// repeated subexpression is stored once. Nodes are never changed in a way
+// that depends on where they are used, so sharing them is safe.
+public class ExpressionArena
+{
+    public static final byte LEAF = 0;
+    public static final byte NEGATE = 1;
+    public static final byte GROUP = 2;
+    public static final byte BINARY = 3;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // steps of printing a node
+    private static final byte VISIT_OPERAND = 0;
+    private static final byte VISIT_TERM = 1;
+    private static final byte VISIT_OPERATOR = 2;
+    private static final byte VISIT_CLOSE = 3;
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+    private static final DataType[] DATA_TYPES = DataType.values();
+    private static final byte FLOAT_TYPE = (byte) DataType.FLOAT.ordinal();
+
+    // flags of a node, set if it has no identifiers under it and if it was
+    // added again after it was first added
+    private static final byte CONSTANT = 1;
+    private static final byte SHARED = 2;
+
+    private byte[] kinds;
+    private byte[] operators;
+    private byte[] types;
+    private byte[] flags;
+
+    // the left operand of a binary node, the operand of a negation or group,
+    // or the index of a leaf's token
+    private int[] lefts;
+    private int[] rights;
+    private int size;
+
+    private Token[] tokens;
+    private int tokenCount;
+
+    // by token index, the ID of every float literal in the literal pool, and
+    // the type and frame offset of the variable of every identifier leaf
+    // once the program has been resolved
+    private int[] literalIds;
+    private byte[] variableTypes;
+    private int[] offsets;
+
+    // the token of every identifier as it was parsed, in order, including
+    // the ones whose leaf was already in the arena. A shared leaf keeps the
+    // token of its first use, so these are where each use is reported
+    private Token[] uses;
+    private int useCount;
+
+    // open addressing table of every node, by a hash of its contents. A
+    // slot holds a node's index plus one, or 0 if it is empty
+    private int[] table;
+
+    public ExpressionArena()
+    {
+        kinds = new byte[INITIAL_CAPACITY];
+        operators = new byte[INITIAL_CAPACITY];
+        types = new byte[INITIAL_CAPACITY];
+        flags = new byte[INITIAL_CAPACITY];
+        lefts = new int[INITIAL_CAPACITY];
+        rights = new int[INITIAL_CAPACITY];
+        size = 0;
+        tokens = new Token[INITIAL_CAPACITY];
+        literalIds = new int[INITIAL_CAPACITY];
+        variableTypes = new byte[INITIAL_CAPACITY];
+        offsets = new int[INITIAL_CAPACITY];
+        tokenCount = 0;
+        uses = new Token[INITIAL_CAPACITY];
+        useCount = 0;
+        table = new int[INITIAL_CAPACITY * 2];
+    }
+
+    public int addLeaf(Token token, DataType type)
+    {
+        if (token.getType() == TokenType.IDENTIFIER)
+        {
+            if (useCount == uses.length)
+            {
+                uses = Arrays.copyOf(uses, useCount * 2);
+            }
+
+            uses[useCount] = token;
+            useCount++;
+        }
+
+        int hash = hashLeaf(token);
+        int slot = findLeafSlot(hash, token.getType(), token.getValue());
+
+        if (table[slot] != 0)
+        {
+            return share(table[slot] - 1);
+        }
+
+        if (tokenCount == tokens.length)
+        {
+            tokens = Arrays.copyOf(tokens, tokenCount * 2);
+            literalIds = Arrays.copyOf(literalIds, tokenCount * 2);
+            variableTypes = Arrays.copyOf(variableTypes, tokenCount * 2);
+            offsets = Arrays.copyOf(offsets, tokenCount * 2);
+        }
+
+        tokens[tokenCount] = token;
+        tokenCount++;
+
+        return add(slot, LEAF, null, tokenCount - 1, -1, type, token.getType() != TokenType.IDENTIFIER);
+    }
+
+    public int addNegate(int operand)
+    {
+        return addInner(NEGATE, null, operand, -1, getType(operand));
+    }
+
+    public int addGroup(int operand)
+    {
+        return addInner(GROUP, null, operand, -1, getType(operand));
+    }
+
+    public int addBinary(int left, TokenType operator, int right)
+    {
+        return addInner(BINARY, operator, left, right, DataType.promote(getType(left), getType(right)));
+    }
+
+    // sets the type of a leaf, for leaves parsed before their identifier's
+    // type was known
+    void setType(int leaf, DataType type)
+    {
+        types[leaf] = (byte) type.ordinal();
+    }
+
+    // updates the type of a node from the types of its operands
+    void updateType(int node)
+    {
+        if (kinds[node] == BINARY)
+        {
+            setType(node, DataType.promote(getType(lefts[node]), getType(rights[node])));
+        }
+        else
+        {
+            types[node] = types[lefts[node]];
+        }
+    }
+
+    public byte getKind(int node)
+    {
+        return kinds[node];
+    }
+
+    public TokenType getOperator(int node)
+    {
+        return TOKEN_TYPES[operators[node]];
+    }
+
+    public DataType getType(int node)
+    {
+        return DATA_TYPES[types[node]];
+    }
+
+    public boolean isFloat(int node)
+    {
+        return types[node] == FLOAT_TYPE;
+    }
+
+    // whether a node has no identifiers under it, so its value is the same
+    // wherever it is used
+    public boolean isConstant(int node)
+    {
+        return (flags[node] & CONSTANT) != 0;
+    }
+
+    // whether a node is used more than once
+    public boolean isShared(int node)
+    {
+        return (flags[node] & SHARED) != 0;
+    }
+
+    public int getLeft(int node)
+    {
+        return lefts[node];
+    }
+
+    public int getRight(int node)
+    {
+        return rights[node];
+    }
+
+    // the operand of a negation or group
+    public int getOperand(int node)
+    {
+        return lefts[node];
+    }
+
+    public Token getToken(int node)
+    {
+        return tokens[lefts[node]];
+    }
+
+    public DataType getVariableType(int leaf)
+    {
+        return DATA_TYPES[variableTypes[lefts[leaf]]];
+    }
+
+    public int getOffset(int leaf)
+    {
+        return offsets[lefts[leaf]];
+    }
+
+    public void bindVariable(int leaf, DataType type, int offset)
+    {
+        variableTypes[lefts[leaf]] = (byte) type.ordinal();
+        offsets[lefts[leaf]] = offset;
+    }
+
+    public int getLiteralId(int leaf)
+    {
+        return literalIds[lefts[leaf]];
+    }
+
+    public void setLiteralId(int leaf, int id)
+    {
+        literalIds[lefts[leaf]] = id;
+    }
+
+    // the number of identifiers parsed into the arena so far
+    public int getUseCount()
+    {
+        return useCount;
+    }
+
+    // the token of an identifier where it was used
+    public Token getUse(int index)
+    {
+        return uses[index];
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    // whether a binary node is a sum rather than a product
+    public boolean isSum(int node)
+    {
+        TokenType operator = getOperator(node);
+        return operator == TokenType.PLUS || operator == TokenType.MINUS;
+    }
+
+    // prints a node the way the expression was written, with the type of
+    // every sum and every operand of one. Nodes are printed from a stack
+    // rather than recursively, so any expression fits in the Java stack
+    public String toString(int root)
+    {
+        StringBuilder s = new StringBuilder();
+        int[] nodes = new int[16];
+        byte[] visits = new byte[16];
+        int depth = 1;
+
+        nodes[0] = root;
+        visits[0] = VISIT_OPERAND;
+
+        while (depth > 0)
+        {
+            depth--;
+            int node = nodes[depth];
+            byte visit = visits[depth];
+
+            if (depth + 2 >= nodes.length)
+            {
+                nodes = Arrays.copyOf(nodes, nodes.length * 2);
+                visits = Arrays.copyOf(visits, visits.length * 2);
+            }
+
+            switch (visit)
+            {
+                // an operand of a sum, which is printed with its type
+                case VISIT_OPERAND:
+                s.append("(Float = " + Boolean.toString(isFloat(node)) + ") ");
+                nodes[depth] = node;
+                visits[depth] = VISIT_TERM;
+                depth++;
+                break;
+
+                case VISIT_TERM:
+                switch (kinds[node])
+                {
+                    case BINARY:
+                    s.append("(");
+                    nodes[depth] = node;
+                    visits[depth] = VISIT_OPERATOR;
+                    nodes[depth + 1] = lefts[node];
+                    visits[depth + 1] = isSum(node) ? VISIT_OPERAND : VISIT_TERM;
+                    depth += 2;
+                    break;
+
+                    case NEGATE:
+                    s.append("-");
+                    nodes[depth] = lefts[node];
+                    visits[depth] = VISIT_TERM;
+                    depth++;
+                    break;
+
+                    case GROUP:
+                    nodes[depth] = lefts[node];
+                    visits[depth] = VISIT_OPERAND;
+                    depth++;
+                    break;
+
+                    default:
+                    s.append(getToken(node).getValue());
+                    break;
+                }
+                break;
+
+                case VISIT_OPERATOR:
+                s.append(" " + getOperatorSymbol(node) + " ");
+                nodes[depth] = node;
+                visits[depth] = VISIT_CLOSE;
+                nodes[depth + 1] = rights[node];
+                visits[depth + 1] = isSum(node) ? VISIT_OPERAND : VISIT_TERM;
+                depth += 2;
+                break;
+
+                default:
+                s.append(")");
+                break;
+            }
+        }
+
+        return s.toString();
+    }
+
+    private String getOperatorSymbol(int node)
+    {
+        switch (getOperator(node))
+        {
+            case PLUS: return "+";
+            case MINUS: return "-";
+            case TIMES: return "*";
+            case DIVISION: return "/";
+            default: return "%";
+        }
+    }
+
+    // adds a node that is not a leaf, or finds the one it is equal to
+    private int addInner(byte kind, TokenType operator, int left, int right, DataType type)
+    {
+        byte operatorCode = operator == null ? 0 : (byte) operator.ordinal();
+        int hash = hashInner(kind, operatorCode, left, right);
+        int slot = findSlot(hash, kind, operatorCode, left, right);
+
+        if (table[slot] != 0)
+        {
+            return share(table[slot] - 1);
+        }
+
+        boolean constant = isConstant(left) && (kind != BINARY || isConstant(right));
+        return add(slot, kind, operator, left, right, type, constant);
+    }
+
+    private int share(int node)
+    {
+        flags[node] |= SHARED;
+        return node;
+    }
+
+    // adds a node into an empty slot of the table
+    private int add(int slot, byte kind, TokenType operator, int left, int right, DataType type, boolean constant)
+    {
+        if (size == kinds.length)
+        {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            operators = Arrays.copyOf(operators, capacity);
+            types = Arrays.copyOf(types, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            lefts = Arrays.copyOf(lefts, capacity);
+            rights = Arrays.copyOf(rights, capacity);
+        }
+
+        kinds[size] = kind;
+        operators[size] = operator == null ? 0 : (byte) operator.ordinal();
+        types[size] = (byte) type.ordinal();
+        flags[size] = constant ? CONSTANT : 0;
+        lefts[size] = left;
+        rights[size] = right;
+        table[slot] = size + 1;
+        size++;
+
+        // the table is kept at most half full
+        if (size * 2 > table.length)
+        {
+            rehash();
+        }
+
+        return size - 1;
+    }
+
+    // finds the slot of the leaf with a token of the given type and text, or
+    // the empty slot it would go in
+    private int findLeafSlot(int hash, TokenType tokenType, String value)
+    {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+
+        while (table[slot] != 0)
+        {
+            int node = table[slot] - 1;
+
+            if (kinds[node] == LEAF && tokens[lefts[node]].getType() == tokenType && tokens[lefts[node]].getValue().equals(value))
+            {
+                return slot;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    // finds the slot of the node with the given kind, operator and operands,
+    // or the empty slot it would go in
+    private int findSlot(int hash, byte kind, byte operator, int left, int right)
+    {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+
+        while (table[slot] != 0)
+        {
+            int node = table[slot] - 1;
+
+            if (kinds[node] == kind && operators[node] == operator && lefts[node] == left && rights[node] == right)
+            {
+                return slot;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private int hashNode(int node)
+    {
+        if (kinds[node] == LEAF)
+        {
+            return hashLeaf(tokens[lefts[node]]);
+        }
+
+        return hashInner(kinds[node], operators[node], lefts[node], rights[node]);
+    }
+
+    private static int hashLeaf(Token token)
+    {
+        return mix(token.getValue().hashCode() * 31 + token.getType().ordinal());
+    }
+
+    private static int hashInner(byte kind, byte operator, int left, int right)
+    {
+        return mix(((kind * 31 + operator) * 31 + left) * 0x9E3779B9 + right);
+    }
+
+    private static int mix(int hash)
+    {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private void rehash()
+    {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+
+        for (int node = 0; node < size; node++)
+        {
+            int slot = hashNode(node) & mask;
+
+            while (table[slot] != 0)
+            {
+                slot = (slot + 1) & mask;
+            }
+
+            table[slot] = node + 1;
+        }
+    }
+}
@@ -0,0 +1,616 @@
+package parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import codegen.SymbolTable;
+import codegen.VarInfo;
+import tokenizer.LineIndex;
+import tokenizer.SourceBuffer;
+import tokenizer.SourcePositions;
+import tokenizer.SplitScanner;
+import tokenizer.SymbolInterner;
+import tokenizer.Token;
+import tokenizer.TokenException;
+import tokenizer.TokenStream;
+import tokenizer.TokenType;
+import tokenizer.Tokenizer;
+
+// Parser that keeps its program up to date as the source is edited. The source
+// is kept as segments of one statement each, cut right after every ';' that
+// ends a statement, and an edit only re-lexes and re-parses the segments from
+// the one it starts in. Once a re-parsed segment ends on an old boundary past
+// the edit, the old segments from there on are kept. A statement only depends
+// on the variables declared before it, so they stay valid unless a variable
+// they use lost its declaration or changed type.
+public class IncrementalParser implements ProgramParser
+{
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NOT_STREAMING = -1;
+
+    private byte[] text;
+    private int textLength;
+    private SourceBuffer source;
+    private LineIndex lines;
+    private SplitScanner scanner;
+    private int sourceEnd;
+    private SymbolInterner symbols;
+    private SymbolTable symbolTable;
+
+    // indexed by symbol ID, the segment that declares each variable, and how
+    // many identifier tokens of the other segments refer to it
+    private Segment[] declaredBy;
+    private int[] useCounts;
+
+    // segments made by the current parse or edit are marked with its number
+    private int version;
+
+    // null until the source has been parsed without errors
+    private List<Segment> segments;
+
+    // built from the segments when they are asked for
+    private List<Statement> program;
+    private LiteralPool litPool;
+
+    // how many statements have been streamed, or NOT_STREAMING
+    private int streamed;
+
+    public IncrementalParser(String inText)
+    {
+        symbols = new SymbolInterner();
+        symbolTable = new SymbolTable();
+        segments = null;
+        version = 0;
+        streamed = NOT_STREAMING;
+        text = inText.getBytes(StandardCharsets.UTF_8);
+        textLength = text.length;
+        setSource(text, textLength);
+        sourceEnd = findSourceEnd();
+    }
+
+    // parses the whole source
+    public boolean parseProgram() throws ParseException, TokenException
+    {
+        List<Segment> parsed = new ArrayList<Segment>();
+        int pos = 0;
+
+        symbolTable = new SymbolTable();
+        declaredBy = new Segment[INITIAL_CAPACITY];
+        useCounts = new int[INITIAL_CAPACITY];
+        segments = null;
+        program = null;
+        litPool = null;
+        version++;
+
+        while (pos < sourceEnd)
+        {
+            int end = scanner.nextSplit(pos, sourceEnd);
+            parsed.add(parseSegment(pos, end));
+            pos = end;
+        }
+
+        segments = parsed;
+        return true;
+    }
+
+    // replaces the source bytes in [start, end) with the given text, and
+    // brings the program up to date. Edits that change what the rest of the
+    // program can see, or that leave it invalid, fall back to parsing the
+    // whole source, which also reports the first error
+    public void edit(int start, int end, String replacement) throws ParseException, TokenException
+    {
+        if (start < 0 || start > end || end > textLength)
+        {
+            throw new IllegalArgumentException("Edit range [" + start + ", " + end + ") is not within the " +
+                                               textLength + " bytes of the source");
+        }
+
+        if (isContinuation(start) || isContinuation(end))
+        {
+            throw new IllegalArgumentException("Edit range [" + start + ", " + end + ") splits a character");
+        }
+
+        byte[] inserted = replacement.getBytes(StandardCharsets.UTF_8);
+        int delta = inserted.length - (end - start);
+        int oldSourceEnd = sourceEnd;
+
+        // the text is edited in place, so only the bytes after the edit move.
+        // Nothing reads the old source once its tokens have been made
+        if (textLength + delta > text.length)
+        {
+            text = Arrays.copyOf(text, Math.max(textLength + delta, text.length * 2));
+        }
+
+        System.arraycopy(text, end, text, start + inserted.length, textLength - end);
+        System.arraycopy(inserted, 0, text, start, inserted.length);
+        textLength += delta;
+        setSource(text, textLength);
+
+        // the source only needs to be searched for a null character if the
+        // edit could have moved the first one
+        if (oldSourceEnd == textLength - delta && !replacement.contains(String.valueOf(Tokenizer.NULL_CHAR)))
+        {
+            sourceEnd = textLength;
+        }
+        else
+        {
+            sourceEnd = findSourceEnd();
+        }
+
+        if (segments == null || !update(start, end, inserted.length, delta, sourceEnd - delta == oldSourceEnd))
+        {
+            parseProgram();
+        }
+    }
+
+    // replaces the whole source with new text, as one edit of the bytes
+    // between the start and end the two have in common
+    public void editTo(String newText) throws ParseException, TokenException
+    {
+        byte[] newBytes = newText.getBytes(StandardCharsets.UTF_8);
+        int prefix = 0;
+        int maxPrefix = Math.min(textLength, newBytes.length);
+
+        while (prefix < maxPrefix && text[prefix] == newBytes[prefix])
+        {
+            prefix++;
+        }
+
+        int suffix = 0;
+        int maxSuffix = maxPrefix - prefix;
+
+        while (suffix < maxSuffix && text[textLength - suffix - 1] == newBytes[newBytes.length - suffix - 1])
+        {
+            suffix++;
+        }
+
+        // the edit has to start and end between characters
+        while (isContinuation(prefix))
+        {
+            prefix--;
+        }
+
+        while (isContinuation(textLength - suffix))
+        {
+            suffix--;
+        }
+
+        String replacement = new String(newBytes, prefix, newBytes.length - suffix - prefix, StandardCharsets.UTF_8);
+        edit(prefix, textLength - suffix, replacement);
+    }
+
+    // the statements are collected from the segments along with their
+    // literals, so the literals have their IDs in the pool before anything
+    // is generated from the statements
+    public List<Statement> getProgram()
+    {
+        if (program == null)
+        {
+            program = new ArrayList<Statement>();
+            litPool = new LiteralPool();
+
+            if (segments != null)
+            {
+                for (Segment segment : segments)
+                {
+                    if (segment.statement != null)
+                    {
+                        program.add(segment.statement);
+                        litPool.addLiterals(segment.statement.getExpression());
+                    }
+                }
+            }
+        }
+
+        return program;
+    }
+
+    public SymbolTable getSymbolTable()
+    {
+        return symbolTable;
+    }
+
+    public LiteralPool getLiteralPool()
+    {
+        getProgram();
+        return litPool;
+    }
+
+    // the program as it was last parsed or edited, parsed in full first if
+    // it has not been, is handed out one statement at a time
+    public Statement streamStatement() throws ParseException, TokenException
+    {
+        if (streamed == NOT_STREAMING)
+        {
+            if (segments == null)
+            {
+                parseProgram();
+            }
+
+            streamed = 0;
+        }
+
+        List<Statement> statements = getProgram();
+        return streamed < statements.size() ? statements.get(streamed++) : null;
+    }
+
+    // nothing is parsed ahead of the statements streamed
+    public void stopStreaming()
+    {
+    }
+
+    // re-parses the segments from the one the edit starts in, until one ends
+    // on an old boundary past the edit. Returns false if the rest of the
+    // program has to be parsed again
+    private boolean update(int start, int end, int insertedLength, int delta, boolean canSync)
+    {
+        int first = findSegment(start);
+        int regionStart = first < segments.size() ? segments.get(first).start : 0;
+        int pos = regionStart;
+        int next = first;
+        boolean synced = false;
+        List<Segment> parsed = new ArrayList<Segment>();
+        List<Segment> replaced = new ArrayList<Segment>();
+
+        version++;
+
+        try
+        {
+            while (pos < sourceEnd && !synced)
+            {
+                int segmentEnd = scanner.nextSplit(pos, sourceEnd);
+
+                // old segments have not been shifted yet. The ones the new
+                // segment covers go first, so their declarations are not seen
+                while (next < segments.size() && segments.get(next).start < Math.max(end, segmentEnd - delta))
+                {
+                    replaced.add(segments.get(next));
+                    removeSegment(segments.get(next));
+                    next++;
+                }
+
+                Segment segment = parseSegment(pos, segmentEnd);
+                parsed.add(segment);
+                pos = segmentEnd;
+
+                if (usesLaterDeclaration(segment, regionStart))
+                {
+                    return false;
+                }
+
+                synced = canSync && pos >= start + insertedLength && next < segments.size() &&
+                         segments.get(next).start == pos - delta;
+            }
+        }
+        catch (ParseException exception)
+        {
+            return false;
+        }
+        catch (TokenException exception)
+        {
+            return false;
+        }
+
+        while (!synced && next < segments.size())
+        {
+            replaced.add(segments.get(next));
+            removeSegment(segments.get(next));
+            next++;
+        }
+
+        if (synced && !declarationsStillMatch(replaced, parsed))
+        {
+            return false;
+        }
+
+        for (int i = next; i < segments.size(); i++)
+        {
+            Segment segment = segments.get(i);
+            segment.start += delta;
+            segment.positions.shift += delta;
+        }
+
+        segments.subList(first, next).clear();
+        segments.addAll(first, parsed);
+        program = null;
+        litPool = null;
+        return true;
+    }
+
+    // a re-parsed statement can refer to a variable that is only declared
+    // further on, since the declarations after the edit stay in the table
+    private boolean usesLaterDeclaration(Segment segment, int regionStart)
+    {
+        for (int i = 0; i < segment.useCount; i++)
+        {
+            Segment declaration = declaredBy[segment.uses[i]];
+
+            // print statements take identifiers that are not declared at all
+            if (declaration != null && declaration.version != version && declaration.start >= regionStart)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // checks that the variables the replaced segments declared are either
+    // declared again with the same type, or not used by any other segment
+    private boolean declarationsStillMatch(List<Segment> replaced, List<Segment> parsed)
+    {
+        for (Segment old : replaced)
+        {
+            if (old.declared == null)
+            {
+                continue;
+            }
+
+            int symbolId = old.declared.getSymbolId();
+            Segment declaration = declaredBy[symbolId];
+
+            if (declaration == null)
+            {
+                if (useCounts[symbolId] > 0)
+                {
+                    return false;
+                }
+            }
+            else if (declaration.declaredInfo.getType() != old.declaredInfo.getType())
+            {
+                int parsedUses = 0;
+
+                for (Segment segment : parsed)
+                {
+                    parsedUses += segment.countUses(symbolId);
+                }
+
+                if (useCounts[symbolId] > parsedUses)
+                {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    // whether an offset of the text is inside a character rather than at
+    // its start
+    private boolean isContinuation(int offset)
+    {
+        return offset < textLength && (text[offset] & 0xC0) == 0x80;
+    }
+
+    private void setSource(byte[] bytes, int length)
+    {
+        source = new SourceBuffer(ByteBuffer.wrap(bytes, 0, length));
+        lines = new LineIndex(source);
+        scanner = new SplitScanner(source);
+    }
+
+    // the tokenizer stops at the first null character
+    private int findSourceEnd()
+    {
+        return source.indexOfAny(0, source.length(), (byte) Tokenizer.NULL_CHAR, (byte) Tokenizer.NULL_CHAR,
+                                 (byte) Tokenizer.NULL_CHAR, (byte) Tokenizer.NULL_CHAR);
+    }
+
+    private Segment parseSegment(int start, int end) throws ParseException, TokenException
+    {
+        Segment segment = new Segment(start);
+        UseRecorder recorder = new UseRecorder(new Tokenizer(source, start, end, segment.positions, symbols), segment);
+
+        // the literals are only pooled once the whole program is asked for
+        Parser parser = new Parser(recorder, symbolTable, new LiteralPool());
+
+        parser.parseProgram();
+
+        // a statement always ends with a ';', so a segment holds at most one,
+        // and none if it is only whitespace and comments
+        if (!parser.getProgram().isEmpty())
+        {
+            segment.statement = parser.getProgram().get(0);
+        }
+
+        if (segment.statement instanceof Declaration)
+        {
+            segment.declared = ((Declaration) segment.statement).getIdentifier();
+            segment.declaredInfo = symbolTable.getVarInfo(segment.declared.getSymbolId());
+
+            // the declared identifier is not a use of the variable
+            segment.removeUse(segment.declared.getSymbolId());
+        }
+
+        addSegment(segment);
+        return segment;
+    }
+
+    // returns the index of the segment that contains an offset
+    private int findSegment(int offset)
+    {
+        int low = 0;
+        int high = segments.size() - 1;
+
+        if (high < 0)
+        {
+            return 0;
+        }
+
+        while (low < high)
+        {
+            int mid = (low + high + 1) >>> 1;
+
+            if (segments.get(mid).start <= offset)
+            {
+                low = mid;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+
+        return low;
+    }
+
+    private void addSegment(Segment segment)
+    {
+        int capacity = symbols.size();
+
+        if (capacity > declaredBy.length)
+        {
+            capacity = Math.max(capacity, declaredBy.length * 2);
+            declaredBy = Arrays.copyOf(declaredBy, capacity);
+            useCounts = Arrays.copyOf(useCounts, capacity);
+        }
+
+        if (segment.declared != null)
+        {
+            declaredBy[segment.declared.getSymbolId()] = segment;
+        }
+
+        for (int i = 0; i < segment.useCount; i++)
+        {
+            useCounts[segment.uses[i]]++;
+        }
+    }
+
+    private void removeSegment(Segment segment)
+    {
+        if (segment.declared != null)
+        {
+            symbolTable.removeIdentifier(segment.declared.getSymbolId());
+            declaredBy[segment.declared.getSymbolId()] = null;
+        }
+
+        for (int i = 0; i < segment.useCount; i++)
+        {
+            useCounts[segment.uses[i]]--;
+        }
+    }
+
+    // One statement and the whitespace and comments before it
+    private class Segment
+    {
+        private int start;
+        private ShiftedPositions positions;
+        private Statement statement;
+        private Token declared;
+        private VarInfo declaredInfo;
+        private int version;
+
+        // symbol IDs of the identifiers the statement refers to
+        private int[] uses;
+        private int useCount;
+
+        Segment(int inStart)
+        {
+            start = inStart;
+            positions = new ShiftedPositions();
+            version = IncrementalParser.this.version;
+            uses = null;
+            useCount = 0;
+        }
+
+        private void addUse(int symbolId)
+        {
+            if (uses == null)
+            {
+                uses = new int[4];
+            }
+            else if (useCount == uses.length)
+            {
+                uses = Arrays.copyOf(uses, useCount * 2);
+            }
+
+            uses[useCount] = symbolId;
+            useCount++;
+        }
+
+        private void removeUse(int symbolId)
+        {
+            for (int i = 0; i < useCount; i++)
+            {
+                if (uses[i] == symbolId)
+                {
+                    uses[i] = uses[useCount - 1];
+                    useCount--;
+                    return;
+                }
+            }
+        }
+
+        private int countUses(int symbolId)
+        {
+            int count = 0;
+
+            for (int i = 0; i < useCount; i++)
+            {
+                if (uses[i] == symbolId)
+                {
+                    count++;
+                }
+            }
+
+            return count;
+        }
+
+    }
+
+    // Positions of the tokens of one segment. They keep the offsets they were
+    // lexed at, which are mapped by how far the segment has moved since
+    private class ShiftedPositions implements SourcePositions
+    {
+        private int shift;
+
+        public int getLine(int offset)
+        {
+            return lines.getLine(offset + shift);
+        }
+
+        public int getCol(int offset)
+        {
+            return lines.getCol(offset + shift);
+        }
+
+        public String describe(int offset)
+        {
+            return lines.describe(offset + shift);
+        }
+    }
+
+    // passes tokens through to the parser, and records the identifiers it
+    // takes as uses of their variables
+    private static class UseRecorder implements TokenStream
+    {
+        private TokenStream tokens;
+        private Segment segment;
+
+        UseRecorder(TokenStream inTokens, Segment inSegment)
+        {
+            tokens = inTokens;
+            segment = inSegment;
+        }
+
+        public Token peek(int distance) throws TokenException
+        {
+            return tokens.peek(distance);
+        }
+
+        public Token next() throws TokenException
+        {
+            Token token = tokens.next();
+
+            if (token != null && token.getType() == TokenType.IDENTIFIER)
+            {
+                segment.addUse(token.getSymbolId());
+            }
+
+            return token;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package parser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import tokenizer.Token;
+import tokenizer.TokenType;
+
+// The float and string literals of a program. Every literal gets an ID when it
+// is first added, counting up in the order they are added, so the pool is
+// laid out the same way on every run. Floats with the same value are one
+// literal, however they were written. A string that ends another string is
+// stored as the end of that one rather than on its own.
+public class LiteralPool
+{
+    public static final byte FLOAT = 0;
+    public static final byte STRING = 1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private List<String> values;
+    private byte[] kinds;
+
+    // floats are found by the bits of their value, or by their text if it
+    // is not a number Java can read
+    private Map<Object, Integer> floatIds;
+    private Map<String, Integer> stringIds;
+
+    // for every string, the string it is stored in and its byte offset into
+    // that one. Worked out again once strings have been added
+    private int[] owners;
+    private int[] ownerOffsets;
+    private boolean laidOut;
+
+    public LiteralPool()
+    {
+        values = new ArrayList<String>();
+        kinds = new byte[INITIAL_CAPACITY];
+        floatIds = new HashMap<Object, Integer>();
+        stringIds = new HashMap<String, Integer>();
+        owners = null;
+        ownerOffsets = null;
+        laidOut = false;
+    }
+
+    // returns the ID of a float literal, adding it if no literal has its value
+    public int addFloat(String literal)
+    {
+        Object key;
+
+        try
+        {
+            key = Float.floatToIntBits(Float.parseFloat(literal));
+        }
+        catch (NumberFormatException exception)
+        {
+            key = literal;
+        }
+
+        Integer id = floatIds.get(key);
+
+        if (id == null)
+        {
+            id = add(literal, FLOAT);
+            floatIds.put(key, id);
+        }
+
+        return id;
+    }
+
+    // returns the ID of a string literal, adding it if it is new
+    public int addString(String literal)
+    {
+        Integer id = stringIds.get(literal);
+
+        if (id == null)
+        {
+            id = add(literal, STRING);
+            stringIds.put(literal, id);
+            laidOut = false;
+        }
+
+        return id;
+    }
+
+    // adds the literals of an expression, and sets their IDs in it. Literals
+    // it shares with an earlier expression were added with that one
+    public void addLiterals(Expression expression)
+    {
+        if (expression instanceof StringExpression)
+        {
+            StringExpression strExpression = (StringExpression) expression;
+            Token token = strExpression.getToken();
+
+            if (token.getType() == TokenType.LITERAL_STR)
+            {
+                strExpression.setLiteralId(addString(token.getValue()));
+            }
+
+            return;
+        }
+
+        NumExpression numExpression = (NumExpression) expression;
+        ExpressionArena arena = numExpression.getArena();
+
+        for (int node = numExpression.getFirst(); node <= numExpression.getRoot(); node++)
+        {
+            if (arena.getKind(node) == ExpressionArena.LEAF && arena.getToken(node).getType() == TokenType.LITERAL_FLOAT)
+            {
+                arena.setLiteralId(node, addFloat(arena.getToken(node).getValue()));
+            }
+        }
+    }
+
+    public int size()
+    {
+        return values.size();
+    }
+
+    public String getValue(int id)
+    {
+        return values.get(id);
+    }
+
+    public byte getKind(int id)
+    {
+        return kinds[id];
+    }
+
+    // the ID of the string a string literal is stored in, which is its own
+    // ID unless it is the end of a longer one
+    public int getOwner(int id)
+    {
+        layOut();
+        return owners[id];
+    }
+
+    // the byte offset of a string literal into the string it is stored in
+    public int getOwnerOffset(int id)
+    {
+        layOut();
+        return ownerOffsets[id];
+    }
+
+    private int add(String literal, byte kind)
+    {
+        int id = values.size();
+
+        if (id == kinds.length)
+        {
+            kinds = Arrays.copyOf(kinds, id * 2);
+        }
+
+        values.add(literal);
+        kinds[id] = kind;
+        return id;
+    }
+
+    // finds the string every string is stored in. Sorted by their reversed
+    // text, the strings that end with a string come right after it, so each
+    // one is stored in the same string as the one after it if it ends that
+    // one, and in itself otherwise
+    private void layOut()
+    {
+        if (laidOut)
+        {
+            return;
+        }
+
+        List<String> reversed = new ArrayList<String>();
+        List<Integer> order = new ArrayList<Integer>();
+
+        owners = new int[values.size()];
+        ownerOffsets = new int[values.size()];
+
+        for (int id = 0; id < values.size(); id++)
+        {
+            owners[id] = id;
+            reversed.add(kinds[id] == STRING ? new StringBuilder(values.get(id)).reverse().toString() : null);
+
+            if (kinds[id] == STRING)
+            {
+                order.add(id);
+            }
+        }
+
+        // ties cannot happen, strings are only added once
+        order.sort((a, b) -> reversed.get(a).compareTo(reversed.get(b)));
+
+        for (int i = order.size() - 2; i >= 0; i--)
+        {
+            int id = order.get(i);
+            int next = order.get(i + 1);
+
+            if (reversed.get(next).startsWith(reversed.get(id)))
+            {
+                owners[id] = owners[next];
+            }
+        }
+
+        // offsets are in the bytes the strings are written as
+        for (int id : order)
+        {
+            if (owners[id] != id)
+            {
+                ownerOffsets[id] = getByteLength(values.get(owners[id])) - getByteLength(values.get(id));
+            }
+        }
+
+        laidOut = true;
+    }
+
+    private static int getByteLength(String s)
+    {
+        return s.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
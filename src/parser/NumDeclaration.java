@@ -20,11 +20,11 @@ public class NumDeclaration extends Declaration
         return expression;
     }
 
-    public String accept(StatementVisitor visitor) throws CompileException
+    public void accept(StatementVisitor visitor) throws CompileException
     {
         try
         {
-            return visitor.visit(this);
+            visitor.visit(this);
         }
         catch (CompileException exception)
         {
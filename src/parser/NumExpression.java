@@ -1,63 +1,60 @@
 package parser;
 
-import tokenizer.Token;
-
+import tokenizer.DataType;
+
+// A numeric expression, as the root of its nodes in the parser's arena. The
+// nodes an expression adds are added together, so they are the ones from its
+// first node up to its root, and every operand comes before its operator.
+// Any other node it uses was added by an earlier expression of the arena.
+// The tokens of its identifiers, where they are used, are the arena's uses
+// from its first one, in the order they were written
 public class NumExpression implements Expression
 {
-    private NumTerm term;
-    private NumExpression lhs;
-    private Token operator;
-    private NumExpression rhs;
-    private boolean floatExpr;
+    private ExpressionArena arena;
+    private int first;
+    private int firstUse;
+    private int root;
 
-    public NumExpression(NumTerm inTerm)
+    public NumExpression(ExpressionArena inArena, int inFirst, int inFirstUse, int inRoot)
     {
-        term = inTerm;
-        floatExpr = inTerm.isFloat();
+        arena = inArena;
+        first = inFirst;
+        firstUse = inFirstUse;
+        root = inRoot;
     }
 
-    public NumExpression(NumExpression left, Token inOperator, NumExpression right)
+    public ExpressionArena getArena()
     {
-        lhs = left;
-        operator = inOperator;
-        rhs = right;
-        floatExpr = left.isFloat() || right.isFloat();
+        return arena;
     }
 
-    public NumExpression getLeft()
+    public int getFirst()
     {
-        return lhs;
+        return first;
     }
 
-    public Token getOperator()
+    public int getFirstUse()
     {
-        return operator;
+        return firstUse;
     }
 
-    public NumExpression getRight()
+    public int getRoot()
     {
-        return rhs;
+        return root;
     }
 
-    public NumTerm getTerm()
+    public DataType getType()
     {
-        return term;
+        return arena.getType(root);
     }
 
     public boolean isFloat()
     {
-        return floatExpr;
+        return arena.isFloat(root);
     }
 
     public String toString()
     {
-        String floatPrefix = "(Float = " + Boolean.toString(floatExpr) + ") ";
-
-        if (term == null)
-        {
-            return floatPrefix + "(" + lhs.toString() + " " + operator.getValue() + " " + rhs.toString() + ")";
-        }
-
-        return floatPrefix + term.toString();
+        return arena.toString(root);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,362 @@
+package parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import codegen.SymbolTable;
+import codegen.VarInfo;
+import tokenizer.DataType;
+import tokenizer.ListTokenStream;
+import tokenizer.Token;
+import tokenizer.TokenException;
+import tokenizer.TokenType;
+
+// Parses a token list in two phases. Chunks of statements, split right after a
+// ';', are first parsed for syntax alone on a ForkJoinPool. Then the statements
+// are resolved in source order: variables are declared, identifiers and types
+// are checked and literals are added to the pool. A statement that fails to
+// parse or to resolve is parsed again from there by a sequential parser, so
+// the program and any error come out exactly as the sequential Parser would
+// produce them.
+public class ParallelParser implements ProgramParser
+{
+    public static final int MIN_CHUNK_SIZE = 1 << 14;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int NOT_STREAMING = -1;
+
+    private List<Token> tokenList;
+    private ForkJoinPool pool;
+    private List<Statement> program = new ArrayList<Statement>();
+    private SymbolTable symbolTable;
+    private LiteralPool litPool;
+
+    // how many statements have been streamed, or NOT_STREAMING
+    private int streamed;
+
+    public ParallelParser(List<Token> inTokens)
+    {
+        this(inTokens, ForkJoinPool.commonPool());
+    }
+
+    public ParallelParser(List<Token> inTokens, ForkJoinPool inPool)
+    {
+        tokenList = inTokens;
+        pool = inPool;
+        symbolTable = new SymbolTable();
+        litPool = new LiteralPool();
+        streamed = NOT_STREAMING;
+    }
+
+    public boolean parseProgram() throws ParseException, TokenException
+    {
+        program.clear();
+        symbolTable = new SymbolTable();
+        litPool = new LiteralPool();
+
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, tokenList.size() / (pool.getParallelism() * CHUNKS_PER_THREAD));
+        List<Integer> splits = findSplitPoints(chunkSize);
+        List<Future<Chunk>> chunks = new ArrayList<Future<Chunk>>();
+
+        for (int i = 0; i + 1 < splits.size(); i++)
+        {
+            int chunkStart = splits.get(i);
+            int chunkEnd = splits.get(i + 1);
+
+            chunks.add(pool.submit(() -> parseChunk(chunkStart, chunkEnd)));
+        }
+
+        // chunks are resolved in order while the later ones are still parsing
+        try
+        {
+            for (Future<Chunk> chunk : chunks)
+            {
+                resolveChunk(getResult(chunk));
+            }
+        }
+        finally
+        {
+            for (Future<Chunk> chunk : chunks)
+            {
+                chunk.cancel(false);
+            }
+        }
+
+        return true;
+    }
+
+    public List<Statement> getProgram()
+    {
+        return program;
+    }
+
+    public SymbolTable getSymbolTable()
+    {
+        return symbolTable;
+    }
+
+    public LiteralPool getLiteralPool()
+    {
+        return litPool;
+    }
+
+    // the program is parsed in full on the first call, and its statements
+    // are then handed out one at a time
+    public Statement streamStatement() throws ParseException, TokenException
+    {
+        if (streamed == NOT_STREAMING)
+        {
+            parseProgram();
+            streamed = 0;
+        }
+
+        List<Statement> statements = getProgram();
+        return streamed < statements.size() ? statements.get(streamed++) : null;
+    }
+
+    // nothing is parsed ahead of the statements streamed
+    public void stopStreaming()
+    {
+    }
+
+    // finds chunk boundaries right after a ';' token, at least chunkSize
+    // tokens apart. Returns the index of every chunk start followed by the
+    // end of the tokens
+    private List<Integer> findSplitPoints(int chunkSize)
+    {
+        List<Integer> splits = new ArrayList<Integer>();
+        int pos = chunkSize - 1;
+
+        splits.add(0);
+
+        while (pos < tokenList.size() - 1)
+        {
+            if (tokenList.get(pos).getType() == TokenType.SEMICOLON)
+            {
+                splits.add(pos + 1);
+                pos += chunkSize;
+            }
+            else
+            {
+                pos++;
+            }
+        }
+
+        splits.add(tokenList.size());
+        return splits;
+    }
+
+    // parses the statements of a chunk for syntax, up to the first error
+    private Chunk parseChunk(int start, int end)
+    {
+        Chunk chunk = new Chunk(end);
+        ListTokenStream stream = new ListTokenStream(tokenList.subList(start, end));
+        Parser parser = new Parser(stream, true);
+
+        try
+        {
+            while (stream.peek(0) != null)
+            {
+                chunk.starts.add(start + stream.getPosition());
+                chunk.statements.add(parser.parseNextStatement());
+            }
+        }
+        catch (ParseException | TokenException | RuntimeException exception)
+        {
+            // the statement is parsed again when it is resolved, which reports
+            // the error. The sequential parser can also fail with a runtime
+            // exception on an unexpected end of the tokens
+            chunk.failed = true;
+        }
+
+        return chunk;
+    }
+
+    private void resolveChunk(Chunk chunk) throws ParseException, TokenException
+    {
+        for (int i = 0; i < chunk.statements.size(); i++)
+        {
+            Statement statement = resolveStatement(chunk.statements.get(i));
+
+            if (statement == null)
+            {
+                parseSequentially(chunk.starts.get(i), chunk.end);
+                return;
+            }
+
+            litPool.addLiterals(statement.getExpression());
+            program.add(statement);
+        }
+
+        if (chunk.failed)
+        {
+            parseSequentially(chunk.starts.get(chunk.statements.size()), chunk.end);
+        }
+    }
+
+    // parses the tokens in [start, end) into the program and tables. The
+    // statements there were not valid so far, so this normally throws the
+    // error the sequential parser would
+    private void parseSequentially(int start, int end) throws ParseException, TokenException
+    {
+        Parser parser = new Parser(new ListTokenStream(tokenList.subList(start, end)), symbolTable, litPool);
+
+        parser.parseProgram();
+        program.addAll(parser.getProgram());
+    }
+
+    // checks a statement against the variables declared before it and adds
+    // its declaration. Returns the statement as the sequential parser would
+    // have built it, or null if that parser would have failed
+    private Statement resolveStatement(Statement statement)
+    {
+        if (statement instanceof StringDeclaration)
+        {
+            return declare((StringDeclaration) statement) ? statement : null;
+        }
+
+        if (statement instanceof Declaration)
+        {
+            Declaration declaration = (Declaration) statement;
+            NumExpression expression = (NumExpression) declaration.getExpression();
+
+            if (!resolveNumExpression(expression) || !declaration.getDataType().canConvertFrom(expression.getType()))
+            {
+                return null;
+            }
+
+            return declare(declaration) ? declaration : null;
+        }
+
+        if (statement instanceof Reassignment)
+        {
+            return resolveReassignment((Reassignment) statement);
+        }
+
+        if (statement instanceof PrintStatement)
+        {
+            return statement;
+        }
+
+        NumExpression exitCode = ((ExitStatement) statement).getExpression();
+        return resolveNumExpression(exitCode) && !exitCode.isFloat() ? statement : null;
+    }
+
+    private Statement resolveReassignment(Reassignment reassignment)
+    {
+        Token identifier = reassignment.getIdentifier();
+        VarInfo info = symbolTable.getVarInfo(identifier.getSymbolId());
+
+        if (info == null)
+        {
+            return null;
+        }
+
+        if (info.getType() == DataType.STRING)
+        {
+            if (reassignment instanceof StringReassignment)
+            {
+                return reassignment;
+            }
+
+            // a lone identifier was parsed as a numeric expression
+            NumExpression expression = ((NumReassignment) reassignment).getExpression();
+            ExpressionArena arena = expression.getArena();
+            int root = expression.getRoot();
+
+            if (arena.getKind(root) == ExpressionArena.LEAF && arena.getToken(root).getType() == TokenType.IDENTIFIER)
+            {
+                return new StringReassignment(identifier, new StringExpression(arena.getToken(root)));
+            }
+
+            return null;
+        }
+
+        if (reassignment instanceof StringReassignment)
+        {
+            return null;
+        }
+
+        NumExpression expression = ((NumReassignment) reassignment).getExpression();
+
+        if (!resolveNumExpression(expression) || !info.getType().canConvertFrom(expression.getType()))
+        {
+            return null;
+        }
+
+        return reassignment;
+    }
+
+    // sets the types of an expression's identifiers and the nodes above them.
+    // Nodes it shares with earlier statements were set when those were
+    // resolved. Returns false if an identifier is unknown
+    private boolean resolveNumExpression(NumExpression expression)
+    {
+        ExpressionArena arena = expression.getArena();
+
+        for (int node = expression.getFirst(); node <= expression.getRoot(); node++)
+        {
+            if (arena.getKind(node) != ExpressionArena.LEAF)
+            {
+                arena.updateType(node);
+                continue;
+            }
+
+            Token token = arena.getToken(node);
+
+            if (token.getType() == TokenType.IDENTIFIER)
+            {
+                VarInfo info = symbolTable.getVarInfo(token.getSymbolId());
+
+                if (info == null)
+                {
+                    return false;
+                }
+
+                arena.setType(node, info.getType());
+            }
+        }
+
+        return true;
+    }
+
+    private boolean declare(Declaration declaration)
+    {
+        return symbolTable.addIdentifier(declaration.getDataType(), declaration.getIdentifier());
+    }
+
+    private <T> T getResult(Future<T> future) throws ParseException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException exception)
+        {
+            throw new IllegalStateException(exception.getCause());
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new ParseException("Parsing was interrupted");
+        }
+    }
+
+    // the statements of a chunk that parsed, and the index of the first
+    // token of each. If the chunk failed, there is one more start, of the
+    // statement that failed
+    private static class Chunk
+    {
+        private List<Statement> statements = new ArrayList<Statement>();
+        private List<Integer> starts = new ArrayList<Integer>();
+        private int end;
+        private boolean failed = false;
+
+        Chunk(int inEnd)
+        {
+            end = inEnd;
+        }
+    }
+}
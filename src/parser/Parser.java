@@ -7,30 +7,61 @@ import codegen.VarInfo;
 
 import java.util.ArrayList;
 
+import tokenizer.DataType;
+import tokenizer.ListTokenStream;
 import tokenizer.Token;
+import tokenizer.TokenException;
+import tokenizer.TokenStream;
 import tokenizer.TokenType;
-import tokenizer.Tokenizer;
 
-public class Parser 
+public class Parser implements ProgramParser
 {
      private List<Statement> program = new ArrayList<Statement>();
-     private List<Token> tokenList = new ArrayList<Token>();
-     private SymbolTable symbolTable = new SymbolTable();
-     private LiteralTable litTable = new LiteralTable();
-     private int tokenPos;
+     private TokenStream tokens;
+     private SymbolTable symbolTable;
+     private LiteralPool litPool;
+     private ExpressionArena arena = new ExpressionArena();
 
-     public Parser(List<Token> tokens)
+     // when set, identifiers, types and literals are left for a ParallelParser
+     // to resolve, and the tables are not used
+     private boolean syntaxOnly;
+
+     private static final int NO_NODE = -1;
+
+     public Parser(List<Token> tokenList)
+     {
+        this(new ListTokenStream(tokenList));
+     }
+
+     // tokens are pulled from the stream as the parser needs them, so a
+     // Tokenizer can be passed in directly to avoid building a token list
+     public Parser(TokenStream tokenStream)
+     {
+        this(tokenStream, new SymbolTable(), new LiteralPool());
+     }
+
+     // parser that adds to existing tables, for parsing part of a program
+     Parser(TokenStream tokenStream, SymbolTable inSymbolTable, LiteralPool inLitPool)
      {
-        tokenList = tokens;
+        tokens = tokenStream;
+        symbolTable = inSymbolTable;
+        litPool = inLitPool;
+        syntaxOnly = false;
      }
 
-     public boolean parseProgram() throws ParseException
+     // parser that only checks syntax, for parsing statements in parallel
+     Parser(TokenStream tokenStream, boolean inSyntaxOnly)
+     {
+        this(tokenStream, null, null);
+        syntaxOnly = inSyntaxOnly;
+     }
+
+     public boolean parseProgram() throws ParseException, TokenException
      {
         program.clear();
-        tokenPos = 0;
         boolean exit = false;
 
-        while (!exit && tokenPos < tokenList.size())
+        while (!exit && peek() != null)
         {
             program.add(parseStatement());
         }
@@ -40,9 +71,11 @@ public class Parser
 
      public void printStatements()
      {
-        for (int i = 0; i < program.size(); i++)
+        List<Statement> statements = getProgram();
+
+        for (int i = 0; i < statements.size(); i++)
         {
-            Statement statement = program.get(i);
+            Statement statement = statements.get(i);
             statement.printStatement();
         }
      }
@@ -57,12 +90,39 @@ public class Parser
         return symbolTable;
      }
 
-     public LiteralTable getLitTable()
+     public LiteralPool getLiteralPool()
+     {
+        return litPool;
+     }
+
+     // parses the next statement of a program that is compiled as it is
+     // parsed, or returns null at the end of the tokens. The statement is not
+     // kept, and its expression nodes are in an arena of its own, so nothing
+     // is left of it once the caller is done with it
+     public Statement streamStatement() throws ParseException, TokenException
+     {
+        if (peek() == null)
+        {
+            return null;
+        }
+
+        arena = new ExpressionArena();
+        return parseStatement();
+     }
+
+     // stops a parser that parses ahead of the statements streamed so far.
+     // This one only parses a statement when it is asked for
+     public void stopStreaming()
+     {
+     }
+
+     // parses the next statement without adding it to the program
+     Statement parseNextStatement() throws ParseException, TokenException
      {
-        return litTable;
+        return parseStatement();
      }
 
-     private Statement parseStatement() throws ParseException
+     private Statement parseStatement() throws ParseException, TokenException
      {
         try
         {
@@ -96,7 +156,7 @@ public class Parser
         }
      }
 
-     private Declaration parseDeclaration() throws ParseException
+     private Declaration parseDeclaration() throws ParseException, TokenException
      {
         Token typeToken;
         Token identifierToken;
@@ -118,12 +178,19 @@ public class Parser
                         {
                             consume();
 
-                            switch (typeToken.getValue())
+                            DataType type = DataType.fromKeyword(typeToken.getValue());
+
+                            if (type == null)
+                            {
+                                throw new ParseException("Unknown data type: " + typeToken.getValue(), typeToken);
+                            }
+
+                            switch (type)
                             {
-                                case Tokenizer.TYPE_INT:
+                                case INT:
                                 NumExpression intExpression = parseNumExpression();
 
-                                if (!intExpression.isFloat())
+                                if (syntaxOnly || type.canConvertFrom(intExpression.getType()))
                                 {
                                     newDeclaration = new NumDeclaration(typeToken, identifierToken, intExpression);
                                     break;
@@ -133,15 +200,15 @@ public class Parser
                                     throw new ParseException("Cannot convert float expression to int", typeToken);
                                 }
 
-                                case Tokenizer.TYPE_FLOAT:
+                                case FLOAT:
                                 NumExpression floatExpression = parseNumExpression();
                                 newDeclaration = new NumDeclaration(typeToken, identifierToken, floatExpression);
                                 break;
 
-                                case Tokenizer.TYPE_CHAR:
+                                case CHAR:
                                 NumExpression charExpression = parseNumExpression();
 
-                                if (!charExpression.isFloat())
+                                if (syntaxOnly || type.canConvertFrom(charExpression.getType()))
                                 {
                                     newDeclaration = new CharDeclaration(typeToken, identifierToken, charExpression);
                                     break;
@@ -151,20 +218,17 @@ public class Parser
                                     throw new ParseException("Cannot convert float expression to char", typeToken);
                                 }
 
-                                case Tokenizer.TYPE_STRING:
+                                default:
                                 StringExpression strExpression = parseStringExpression();
                                 newDeclaration = new StringDeclaration(typeToken, identifierToken, strExpression);
                                 break;
-
-                                default:
-                                throw new ParseException("Unknown data type: " + typeToken.getValue(), typeToken);
                             }
                             
                             if ( peek() != null && peek().getType() == TokenType.SEMICOLON ) 
                             {
                                 consume();
                                 
-                                if (!symbolTable.addIdentifier(typeToken.getValue(), identifierToken.getValue()))
+                                if (!syntaxOnly && !symbolTable.addIdentifier(type, identifierToken))
                                 {
                                     throw new ParseException("Identifier '" + identifierToken.getValue() + "' already in use.");
                                 }
@@ -202,7 +266,7 @@ public class Parser
         }
      }
 
-     private Reassignment parseReassignment() throws ParseException
+     private Reassignment parseReassignment() throws ParseException, TokenException
      {
         Token identifier;
         VarInfo info;
@@ -218,16 +282,29 @@ public class Parser
                 {
                     consume();
 
-                    info = symbolTable.getVarInfo(identifier.getValue());
+                    info = syntaxOnly ? null : symbolTable.getVarInfo(identifier.getSymbolId());
 
-                    if (info != null)
+                    // the kind of expression depends on the variable's type,
+                    // so without it only a string literal is taken as a string
+                    if (syntaxOnly)
+                    {
+                        if (peek() != null && peek().getType() == TokenType.LITERAL_STR)
+                        {
+                            newReassignment = new StringReassignment(identifier, parseStringExpression());
+                        }
+                        else
+                        {
+                            newReassignment = new NumReassignment(identifier, parseNumExpression());
+                        }
+                    }
+                    else if (info != null)
                     {
                         switch (info.getType())
                         {
-                            case Tokenizer.TYPE_INT:
+                            case INT:
                             NumExpression intExpression = parseNumExpression();
 
-                            if (!intExpression.isFloat())
+                            if (info.getType().canConvertFrom(intExpression.getType()))
                             {
                                 newReassignment = new NumReassignment(identifier, intExpression);
                                 break;
@@ -237,15 +314,15 @@ public class Parser
                                 throw new ParseException("Cannot convert float expression to int", identifier);
                             }
 
-                            case Tokenizer.TYPE_FLOAT:
+                            case FLOAT:
                             NumExpression floatExpression = parseNumExpression();
                             newReassignment = new NumReassignment(identifier, floatExpression);
                             break;
 
-                            case Tokenizer.TYPE_CHAR:
+                            case CHAR:
                             NumExpression charExpression = parseNumExpression();
 
-                            if (!charExpression.isFloat())
+                            if (info.getType().canConvertFrom(charExpression.getType()))
                             {
                                 newReassignment = new NumReassignment(identifier, charExpression);
                                 break;
@@ -255,7 +332,7 @@ public class Parser
                                 throw new ParseException("Cannot convert float expression to char", identifier);
                             }
 
-                            case Tokenizer.TYPE_STRING:
+                            case STRING:
                             StringExpression strExpression = parseStringExpression();
                             newReassignment = new StringReassignment(identifier, strExpression);
                             break;
@@ -263,21 +340,21 @@ public class Parser
                             default:
                             throw new ParseException("Unknown type of identifier '" + identifier.getValue() + "': " + info.getType(), identifier);
                         }
-
-                        if (peek().getType() == TokenType.SEMICOLON)
-                        {
-                            consume();
-                            return newReassignment;
-                        }
-                        else
-                        {
-                            throw new ParseException("Expected ';', got " + peek().getValue(), peek());
-                        }
                     }
                     else
                     {
                         throw new ParseException("Undeclared variable '" + identifier.getValue() + "'", identifier);
                     }
+
+                    if (peek().getType() == TokenType.SEMICOLON)
+                    {
+                        consume();
+                        return newReassignment;
+                    }
+                    else
+                    {
+                        throw new ParseException("Expected ';', got " + peek().getValue(), peek());
+                    }
                 }
                 else
                 {
@@ -295,7 +372,7 @@ public class Parser
         }
      }
 
-     private PrintStatement parsePrintStatement() throws ParseException
+     private PrintStatement parsePrintStatement() throws ParseException, TokenException
      {
         StringExpression expression;
 
@@ -317,7 +394,7 @@ public class Parser
         throw new ParseException("Expected 'print', got " + peek().getValue(), peek());
      }
 
-     private ExitStatement parseExitStatement() throws ParseException
+     private ExitStatement parseExitStatement() throws ParseException, TokenException
      {
         NumExpression expression;
 
@@ -327,7 +404,7 @@ public class Parser
 
             expression = parseNumExpression();
 
-            if (expression.isFloat())
+            if (!syntaxOnly && expression.isFloat())
             {
                 throw new ParseException("Exit code cannot be a float value");
             }
@@ -344,129 +421,170 @@ public class Parser
         throw new ParseException("Expected 'exit', got " + peek().getValue(), peek());
      }
 
-     private NumExpression parseNumExpression() throws ParseException
+     private NumExpression parseNumExpression() throws ParseException, TokenException
      {
-        NumExpression expression;
-        NumExpression rightExpression;
-        NumTerm term;
-        Token operator;
-        
-        term = parseNumTerm();
-        expression = new NumExpression(term);
-        
-        while ( peek() != null &&
-            peek().getType() == TokenType.PLUS || peek().getType() == TokenType.MINUS)
-        {
-            operator = consume();
-            term = parseNumTerm();
-            rightExpression = new NumExpression(term);
-            expression = new NumExpression(expression, operator, rightExpression);
-        }
-
-        return expression;
+        int first = arena.size();
+        int firstUse = arena.getUseCount();
+        return new NumExpression(arena, first, firstUse, parseNumSum());
      }
 
-     private NumTerm parseNumTerm() throws ParseException
+     // parses a sum of products by precedence climbing. Rather than recursing
+     // into parentheses, the partly parsed sum and term of every open group
+     // are kept on a stack, so nesting depth and length never use Java stack
+     private int parseNumSum() throws ParseException, TokenException
      {
-        NumFactor factor;
-        NumTerm term;
-        Token operator;
-        NumTerm right;
-
-        factor = parseNumFactor();
-        term = new NumTerm(factor);
-
-        while (peek() != null &&
-                (peek().getType() == TokenType.TIMES || 
-                peek().getType() == TokenType.DIVISION ||
-                peek().getType() == TokenType.MOD))
-        {
-            operator = consume();
-            factor = parseNumFactor();
-            right = new NumTerm(factor);
-
-            term = new NumTerm(term, operator, right);
-        }
+        List<ExpressionFrame> groups = new ArrayList<ExpressionFrame>();
+        ExpressionFrame frame = new ExpressionFrame(false);
 
-        return term;
-     }
+        while (true)
+        {
+            int factor;
+            boolean negative = false;
 
-     private NumFactor parseNumFactor() throws ParseException
-     {
-        NumFactor newFactor;
-        boolean negative = false;
+            if (peek() == null)
+            {
+                throw new ParseException("Expected int factor, got EOF");
+            }
 
-        if (peek() != null)
-        {
             if (peek().getType() == TokenType.MINUS)
             {
                 negative = true;
                 consume();
             }
 
-            if (peek().getType() == TokenType.LITERAL_INT ||
-                peek().getType() == TokenType.LITERAL_FLOAT ||
-                peek().getType() == TokenType.IDENTIFIER ||
-                peek().getType() == TokenType.LITERAL_CHAR)
+            if (peek().getType() == TokenType.OPEN_PAREN)
+            {
+                consume();
+                groups.add(frame);
+                frame = new ExpressionFrame(negative);
+                continue;
+            }
+
+            factor = parseNumFactor(negative);
+
+            // fold the factor into the current term, and close every group
+            // that ends after it
+            while (true)
             {
-                newFactor = new NumFactor(consume(), negative);
+                frame.term = frame.term == NO_NODE ? factor : arena.addBinary(frame.term, frame.termOperator, factor);
 
-                switch (newFactor.getToken().getType())
+                if (peek() != null &&
+                    (peek().getType() == TokenType.TIMES || 
+                    peek().getType() == TokenType.DIVISION ||
+                    peek().getType() == TokenType.MOD))
                 {
-                    case LITERAL_FLOAT:
-                    litTable.addLiteralWithType(newFactor.getToken().getValue(), Tokenizer.TYPE_FLOAT);
-                    newFactor.setFloat(true);
+                    frame.termOperator = consume().getType();
                     break;
+                }
 
-                    case IDENTIFIER:
-                    String identifierStr = newFactor.getToken().getValue();
-
-                    if (symbolTable.identifierExists(identifierStr))
-                    {
-                        newFactor.setFloat(symbolTable.getIdentifierType(identifierStr).equals(Tokenizer.TYPE_FLOAT));
-                        break;
-                    }
-                    else
-                    {
-                        throw new ParseException("Unknown identifier: " + identifierStr, newFactor.getToken());
-                    }
+                frame.sum = frame.sum == NO_NODE ? frame.term : arena.addBinary(frame.sum, frame.sumOperator, frame.term);
+                frame.term = NO_NODE;
 
-                    default:
-                    newFactor.setFloat(false);
+                if ( peek() != null &&
+                    peek().getType() == TokenType.PLUS || peek().getType() == TokenType.MINUS)
+                {
+                    frame.sumOperator = consume().getType();
                     break;
                 }
 
-                return newFactor;
+                if (groups.isEmpty())
+                {
+                    return frame.sum;
+                }
+
+                if (peek().getType() != TokenType.CLOSE_PAREN)
+                {
+                    throw new ParseException("Expected ')', got " + peek().getValue(), peek());
+                }
+
+                consume();
+                factor = arena.addGroup(frame.sum);
+
+                if (frame.negative)
+                {
+                    factor = arena.addNegate(factor);
+                }
+
+                frame = groups.remove(groups.size() - 1);
             }
-            else if (peek().getType() == TokenType.OPEN_PAREN)
+        }
+     }
+
+     // parses a literal or identifier, after any minus sign before it
+     private int parseNumFactor(boolean negative) throws ParseException, TokenException
+     {
+        if (peek().getType() == TokenType.LITERAL_INT ||
+            peek().getType() == TokenType.LITERAL_FLOAT ||
+            peek().getType() == TokenType.IDENTIFIER ||
+            peek().getType() == TokenType.LITERAL_CHAR)
+        {
+            Token token = consume();
+            DataType type;
+            int newFactor;
+
+            switch (token.getType())
             {
-                consume();
-                newFactor = new NumFactor(parseNumExpression(), negative);
+                case LITERAL_FLOAT:
+                newFactor = arena.addLeaf(token, DataType.FLOAT);
 
-                if (peek().getType() == TokenType.CLOSE_PAREN)
+                if (!syntaxOnly)
                 {
-                        consume();
-                    return newFactor;
+                    arena.setLiteralId(newFactor, litPool.addFloat(token.getValue()));
+                }
+
+                return negative ? arena.addNegate(newFactor) : newFactor;
+
+                case IDENTIFIER:
+                // the type is set when the statement is resolved
+                if (syntaxOnly)
+                {
+                    type = DataType.INT;
+                    break;
+                }
+
+                String identifierStr = token.getValue();
+                int symbolId = token.getSymbolId();
+
+                if (symbolTable.identifierExists(symbolId))
+                {
+                    type = symbolTable.getIdentifierType(symbolId);
+                    break;
                 }
-                        
-                throw new ParseException("Expected ')', got " + peek().getValue(), peek());
+                else
+                {
+                    throw new ParseException("Unknown identifier: " + identifierStr, token);
+                }
+
+                case LITERAL_CHAR:
+                type = DataType.CHAR;
+                break;
+
+                default:
+                type = DataType.INT;
+                break;
             }
 
-            throw new ParseException("Expected literal, identifier, or '(', got " + peek().getValue(), peek());
+            newFactor = arena.addLeaf(token, type);
+            return negative ? arena.addNegate(newFactor) : newFactor;
         }
 
-        throw new ParseException("Expected int factor, got EOF");
+        throw new ParseException("Expected literal, identifier, or '(', got " + peek().getValue(), peek());
      }
 
-     private StringExpression parseStringExpression() throws ParseException
+     private StringExpression parseStringExpression() throws ParseException, TokenException
      {
         if (peek() != null)
         {
             if (peek().getType() == TokenType.LITERAL_STR)
             {
-                Token temp = consume();
-                litTable.addLiteralWithType(temp.getValue(), Tokenizer.TYPE_STRING);
-                return new StringExpression(temp);
+                StringExpression literal = new StringExpression(consume());
+
+                if (!syntaxOnly)
+                {
+                    literal.setLiteralId(litPool.addString(literal.getToken().getValue()));
+                }
+
+                return literal;
             }
             else if (peek().getType() == TokenType.IDENTIFIER)
             {
@@ -479,25 +597,28 @@ public class Parser
         throw new ParseException("Expected string literal or identifier, got EOF");
      }
 
-     private Token peek()
+     private Token peek() throws TokenException
      {
-        if (tokenPos < tokenList.size())
-        {
-            return tokenList.get(tokenPos);
-        }
+        return tokens.peek(0);
+     }
 
-        return null;
+     private Token consume() throws TokenException
+     {
+        return tokens.next();
      }
 
-     private Token consume()
+     // the partly parsed sum and term of an expression or an open group
+     private static class ExpressionFrame
      {
-        if (tokenPos < tokenList.size())
+        private int sum = NO_NODE;
+        private TokenType sumOperator;
+        private int term = NO_NODE;
+        private TokenType termOperator;
+        private boolean negative;
+
+        ExpressionFrame(boolean inNegative)
         {
-            Token returnToken = tokenList.get(tokenPos);
-            tokenPos++;
-            return returnToken;
+            negative = inNegative;
         }
-
-        return null;
      }
 }
\ No newline at end of file
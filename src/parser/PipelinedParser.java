@@ -0,0 +1,184 @@
+package parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import codegen.SymbolTable;
+import tokenizer.PipedTokenStream;
+import tokenizer.TokenException;
+import tokenizer.Tokenizer;
+
+// Parses a program on threads of its own, for compiling it while it is parsed.
+// The tokenizer runs on one thread and a Parser on another, and statements are
+// handed to the caller of streamStatement through a bounded queue, so
+// tokenizing, parsing and code generation all overlap. Every stage waits when
+// the one after it falls behind. Statements and errors come out in the same
+// order as from a Parser on the tokenizer.
+public class PipelinedParser implements ProgramParser
+{
+    public static final int QUEUE_CAPACITY = 256;
+
+    private PipedTokenStream tokens;
+
+    // the parser on the parsing thread, which has the tables
+    private Parser parser;
+    private BlockingQueue<Result> queue;
+    private Thread thread;
+    private List<Statement> program = new ArrayList<Statement>();
+    private boolean ended;
+
+    public PipelinedParser(Tokenizer tokenizer)
+    {
+        tokens = new PipedTokenStream(tokenizer);
+        parser = new Parser(tokens);
+        queue = new ArrayBlockingQueue<Result>(QUEUE_CAPACITY);
+        thread = null;
+        ended = false;
+    }
+
+    public boolean parseProgram() throws ParseException, TokenException
+    {
+        Statement statement;
+
+        program.clear();
+
+        while ((statement = streamStatement()) != null)
+        {
+            program.add(statement);
+        }
+
+        return true;
+    }
+
+    public Statement streamStatement() throws ParseException, TokenException
+    {
+        if (ended)
+        {
+            return null;
+        }
+
+        if (thread == null)
+        {
+            start();
+        }
+
+        Result result;
+
+        try
+        {
+            result = queue.take();
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            stopStreaming();
+            throw new ParseException("Parsing was interrupted");
+        }
+
+        if (result.statement != null)
+        {
+            return result.statement;
+        }
+
+        ended = true;
+
+        if (result.error instanceof ParseException)
+        {
+            throw (ParseException) result.error;
+        }
+        else if (result.error instanceof TokenException)
+        {
+            throw (TokenException) result.error;
+        }
+        else if (result.error instanceof Error)
+        {
+            throw (Error) result.error;
+        }
+        else if (result.error != null)
+        {
+            throw (RuntimeException) result.error;
+        }
+
+        return null;
+    }
+
+    public void stopStreaming()
+    {
+        tokens.stop();
+
+        if (thread != null)
+        {
+            thread.interrupt();
+        }
+    }
+
+    public List<Statement> getProgram()
+    {
+        return program;
+    }
+
+    // the tables are only complete once every statement has been taken
+    public SymbolTable getSymbolTable()
+    {
+        return parser.getSymbolTable();
+    }
+
+    public LiteralPool getLiteralPool()
+    {
+        return parser.getLiteralPool();
+    }
+
+    private void start()
+    {
+        tokens.start();
+        thread = new Thread(this::parse, "parser");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // runs on the parsing thread until the tokens end, an error is found or
+    // parsing is stopped
+    private void parse()
+    {
+        try
+        {
+            try
+            {
+                Statement statement;
+
+                while ((statement = parser.streamStatement()) != null)
+                {
+                    queue.put(new Result(statement, null));
+                }
+
+                queue.put(new Result(null, null));
+            }
+            catch (ParseException | TokenException | RuntimeException | Error exception)
+            {
+                // anything the parser throws is thrown again to the caller
+                queue.put(new Result(null, exception));
+            }
+        }
+        catch (InterruptedException exception)
+        {
+            // parsing was stopped, nothing takes from the queue any more
+            tokens.stop();
+        }
+    }
+
+    // a parsed statement, or the end of the statements with the error that
+    // ended them, if any
+    private static class Result
+    {
+        private Statement statement;
+        private Throwable error;
+
+        Result(Statement inStatement, Throwable inError)
+        {
+            statement = inStatement;
+            error = inError;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package parser;
+
+import java.util.List;
+
+import codegen.SymbolTable;
+import tokenizer.TokenException;
+
+// What the compiler needs of a parser: the program, parsed whole or a
+// statement at a time, and the tables it was parsed into.
+public interface ProgramParser
+{
+    public boolean parseProgram() throws ParseException, TokenException;
+    public List<Statement> getProgram();
+    public SymbolTable getSymbolTable();
+    public LiteralPool getLiteralPool();
+
+    // parses the next statement of a program that is compiled as it is
+    // parsed, or returns null at the end of the program
+    public Statement streamStatement() throws ParseException, TokenException;
+
+    // stops a parser that parses ahead of the statements streamed so far
+    public void stopStreaming();
+}
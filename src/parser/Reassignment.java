@@ -1,10 +1,17 @@
 package parser;
 
+import tokenizer.DataType;
 import tokenizer.Token;
 
 public abstract class Reassignment implements Statement {
     private Token identifierToken;
 
+    // frame offset of the variable, set when the program is resolved
+    private int offset;
+
+    // type of the variable, set when the program is resolved
+    private DataType variableType;
+
     public Token getIdentifier()
     {
         return identifierToken;
@@ -15,6 +22,26 @@ public abstract class Reassignment implements Statement {
         identifierToken = identifier;
     }
 
+    public int getOffset()
+    {
+        return offset;
+    }
+
+    public void setOffset(int inOffset)
+    {
+        offset = inOffset;
+    }
+
+    public DataType getVariableType()
+    {
+        return variableType;
+    }
+
+    public void setVariableType(DataType type)
+    {
+        variableType = type;
+    }
+
     public abstract Expression getExpression();
 
     public void printStatement()
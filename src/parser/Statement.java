@@ -6,5 +6,6 @@ import codegen.CompileException;
 public interface Statement 
 {
     public void printStatement();
-    public String accept(StatementVisitor visitor) throws CompileException;
+    public Expression getExpression();
+    public void accept(StatementVisitor visitor) throws CompileException;
 }
\ No newline at end of file
@@ -6,6 +6,14 @@ import tokenizer.TokenType;
 public class StringExpression implements Expression {
     private Token token;
 
+    // the ID of a literal in the literal pool
+    private int literalId;
+
+    // for an identifier, set when the program is resolved: the frame offset
+    // of its variable and the size of the string it holds at this point
+    private int offset;
+    private int strSize;
+
     public StringExpression(Token inToken)
     {
         token = inToken;
@@ -16,6 +24,36 @@ public class StringExpression implements Expression {
         return token;
     }
 
+    public int getLiteralId()
+    {
+        return literalId;
+    }
+
+    public void setLiteralId(int id)
+    {
+        literalId = id;
+    }
+
+    public int getOffset()
+    {
+        return offset;
+    }
+
+    public void setOffset(int inOffset)
+    {
+        offset = inOffset;
+    }
+
+    public int getStrSize()
+    {
+        return strSize;
+    }
+
+    public void setStrSize(int inStrSize)
+    {
+        strSize = inStrSize;
+    }
+
     public String toString()
     {
         if (token.getType() == TokenType.LITERAL_STR)
@@ -0,0 +1,94 @@
+package tokenizer;
+
+// The data types of the language, with the keyword each is declared with and
+// the bytes a variable of it takes on the stack. A string variable holds a
+// pointer to its characters.
+public enum DataType
+{
+    CHAR(Tokenizer.TYPE_CHAR, 1),
+    INT(Tokenizer.TYPE_INT, 4),
+    FLOAT(Tokenizer.TYPE_FLOAT, 4),
+    STRING(Tokenizer.TYPE_STRING, 4);
+
+    private String keyword;
+    private int size;
+
+    private DataType(String inKeyword, int inSize)
+    {
+        keyword = inKeyword;
+        size = inSize;
+    }
+
+    // the type declared by a type keyword, or null if it is not one
+    public static DataType fromKeyword(String keyword)
+    {
+        switch (keyword)
+        {
+            case Tokenizer.TYPE_CHAR:
+            return CHAR;
+
+            case Tokenizer.TYPE_INT:
+            return INT;
+
+            case Tokenizer.TYPE_FLOAT:
+            return FLOAT;
+
+            case Tokenizer.TYPE_STRING:
+            return STRING;
+
+            default:
+            return null;
+        }
+    }
+
+    // the type of an arithmetic operation on two operands. Any float operand
+    // makes the result a float, and only chars on both sides keep it a char.
+    // Anything else is done on ints
+    public static DataType promote(DataType left, DataType right)
+    {
+        if (left == FLOAT || right == FLOAT)
+        {
+            return FLOAT;
+        }
+
+        return left == CHAR && right == CHAR ? CHAR : INT;
+    }
+
+    public String getKeyword()
+    {
+        return keyword;
+    }
+
+    public int getSize()
+    {
+        return size;
+    }
+
+    public boolean isFloat()
+    {
+        return this == FLOAT;
+    }
+
+    public boolean isInteger()
+    {
+        return this == INT || this == CHAR;
+    }
+
+    // whether a value of the given type can be stored in a variable of this
+    // one. Floats are never narrowed into an integer type. Strings in a
+    // numeric expression are reported when identifiers are resolved
+    public boolean canConvertFrom(DataType source)
+    {
+        if (this == STRING)
+        {
+            return source == STRING;
+        }
+
+        return this == FLOAT || source != FLOAT;
+    }
+
+    public String toString()
+    {
+        return keyword;
+    }
+}
@@ -0,0 +1,88 @@
+package tokenizer;
+
+// The offset at which every line of a source starts. It is only built the
+// first time a position is asked for, so scanning never tracks lines and
+// columns, and positions are then found with a binary search.
+public class LineIndex implements SourcePositions
+{
+    private SourceBuffer source;
+    private volatile int[] lineStarts;
+
+    public LineIndex(SourceBuffer inSource)
+    {
+        source = inSource;
+        lineStarts = null;
+    }
+
+    // returns the 1-based line of a source offset
+    public int getLine(int offset)
+    {
+        int[] starts = getLineStarts();
+        int low = 0;
+        int high = starts.length - 1;
+
+        // find the last line that starts at or before the offset
+        while (low < high)
+        {
+            int mid = (low + high + 1) >>> 1;
+
+            if (starts[mid] <= offset)
+            {
+                low = mid;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+
+        return low + 1;
+    }
+
+    // returns the 1-based column of a source offset, counted in characters
+    public int getCol(int offset)
+    {
+        int lineStart = getLineStarts()[getLine(offset) - 1];
+        return source.countCharacters(lineStart, offset) + 1;
+    }
+
+    public String describe(int offset)
+    {
+        return "line " + getLine(offset) + ", col " + getCol(offset);
+    }
+
+    private int[] getLineStarts()
+    {
+        int[] starts = lineStarts;
+
+        if (starts == null)
+        {
+            synchronized (this)
+            {
+                if (lineStarts == null)
+                {
+                    lineStarts = buildLineStarts();
+                }
+
+                starts = lineStarts;
+            }
+        }
+
+        return starts;
+    }
+
+    private int[] buildLineStarts()
+    {
+        byte endline = (byte) Tokenizer.ENDLINE;
+        int[] starts = new int[source.countByte(0, source.length(), endline) + 1];
+        int pos = 0;
+
+        for (int i = 1; i < starts.length; i++)
+        {
+            pos = source.indexOfAny(pos, source.length(), endline, endline, endline, endline) + 1;
+            starts[i] = pos;
+        }
+
+        return starts;
+    }
+}
@@ -0,0 +1,44 @@
+package tokenizer;
+
+import java.util.List;
+
+// Token stream over a list of tokens that has already been built
+public class ListTokenStream implements TokenStream
+{
+    private List<Token> tokenList;
+    private int tokenPos;
+
+    public ListTokenStream(List<Token> tokens)
+    {
+        tokenList = tokens;
+        tokenPos = 0;
+    }
+
+    public Token peek(int distance)
+    {
+        if (tokenPos + distance < tokenList.size())
+        {
+            return tokenList.get(tokenPos + distance);
+        }
+
+        return null;
+    }
+
+    // the index of the next token in the list
+    public int getPosition()
+    {
+        return tokenPos;
+    }
+
+    public Token next()
+    {
+        if (tokenPos < tokenList.size())
+        {
+            Token returnToken = tokenList.get(tokenPos);
+            tokenPos++;
+            return returnToken;
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,92 @@
+package tokenizer;
+
+import java.util.Arrays;
+
+// Struct-of-arrays storage for a tokenized program. Each token is a type and
+// a source range held in parallel primitive arrays, and token values and
+// positions are only worked out when they are asked for.
+public class PackedTokenBuffer
+{
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private Tokenizer tokenizer;
+    private byte[] types;
+    private int[] offsets;
+    private int[] lengths;
+    private int size;
+
+    public PackedTokenBuffer(Tokenizer inTokenizer)
+    {
+        tokenizer = inTokenizer;
+        types = new byte[INITIAL_CAPACITY];
+        offsets = new int[INITIAL_CAPACITY];
+        lengths = new int[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    public void add(TokenType type, int offset, int length)
+    {
+        if (size == types.length)
+        {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+
+        types[size] = (byte) type.ordinal();
+        offsets[size] = offset;
+        lengths[size] = length;
+        size++;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public TokenType getType(int index)
+    {
+        return TYPES[types[index]];
+    }
+
+    public int getOffset(int index)
+    {
+        return offsets[index];
+    }
+
+    public int getLength(int index)
+    {
+        return lengths[index];
+    }
+
+    public int getLine(int index)
+    {
+        return tokenizer.getPositions().getLine(offsets[index]);
+    }
+
+    public int getCol(int index)
+    {
+        return tokenizer.getPositions().getCol(offsets[index]);
+    }
+
+    public String getValue(int index)
+    {
+        return tokenizer.getTokenValue(getType(index), offsets[index], lengths[index]);
+    }
+
+    // materializes a single token, for consumers that work on Token objects
+    public Token getToken(int index)
+    {
+        return tokenizer.createToken(getType(index), offsets[index], lengths[index]);
+    }
+
+    public void printTokens()
+    {
+        for (int i = 0; i < size; i++)
+        {
+            System.out.println(getToken(i).toString());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package tokenizer;
+
+// Token stream over a packed token buffer. Only the tokens in the lookahead
+// window exist as Token objects at any time.
+public class PackedTokenStream implements TokenStream
+{
+    private PackedTokenBuffer buffer;
+    private int tokenPos;
+    private Token current;
+
+    public PackedTokenStream(PackedTokenBuffer inBuffer)
+    {
+        buffer = inBuffer;
+        tokenPos = 0;
+        current = null;
+    }
+
+    public Token peek(int distance)
+    {
+        if (tokenPos + distance >= buffer.size())
+        {
+            return null;
+        }
+
+        if (distance > 0)
+        {
+            return buffer.getToken(tokenPos + distance);
+        }
+
+        if (current == null)
+        {
+            current = buffer.getToken(tokenPos);
+        }
+
+        return current;
+    }
+
+    public Token next()
+    {
+        Token returnToken = peek(0);
+
+        if (returnToken != null)
+        {
+            tokenPos++;
+            current = null;
+        }
+
+        return returnToken;
+    }
+}
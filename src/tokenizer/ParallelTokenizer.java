@@ -0,0 +1,170 @@
+package tokenizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Tokenizes a source in chunks on a ForkJoinPool. Chunks are split right after
+// a ';' that is outside of any literal or comment, so every chunk starts on a
+// token boundary, and the tokens come out exactly as the sequential Tokenizer
+// would produce them. All chunks share one line index for token positions.
+// Every chunk interns its identifiers on its own, and the IDs are then mapped
+// to ones given in chunk order, so an identifier gets the same ID as from the
+// sequential Tokenizer, whatever order the chunks ran in.
+public class ParallelTokenizer
+{
+    public static final int MIN_CHUNK_SIZE = 1 << 16;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private List<Token> tokenList = new ArrayList<Token>();
+    private SourceBuffer source;
+    private ForkJoinPool pool;
+
+    public ParallelTokenizer(SourceBuffer inSource)
+    {
+        this(inSource, ForkJoinPool.commonPool());
+    }
+
+    public ParallelTokenizer(SourceBuffer inSource, ForkJoinPool inPool)
+    {
+        source = inSource;
+        pool = inPool;
+    }
+
+    public void tokenize() throws TokenException
+    {
+        tokenList.clear();
+
+        // the sequential tokenizer stops at the first null character
+        int end = source.indexOfAny(0, source.length(), (byte) Tokenizer.NULL_CHAR, (byte) Tokenizer.NULL_CHAR,
+                                    (byte) Tokenizer.NULL_CHAR, (byte) Tokenizer.NULL_CHAR);
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, end / (pool.getParallelism() * CHUNKS_PER_THREAD));
+        List<Integer> splits = findSplitPoints(end, chunkSize);
+        int chunkCount = splits.size() - 1;
+        LineIndex lines = new LineIndex(source);
+        List<Callable<List<Token>>> tasks = new ArrayList<Callable<List<Token>>>();
+
+        for (int i = 0; i < chunkCount; i++)
+        {
+            int chunkStart = splits.get(i);
+            int chunkEnd = splits.get(i + 1);
+
+            tasks.add(() -> {
+                Tokenizer tokenizer = new Tokenizer(source.duplicate(), chunkStart, chunkEnd, lines, new SymbolInterner());
+                tokenizer.tokenize();
+                return tokenizer.getTokens();
+            });
+        }
+
+        SymbolInterner symbols = new SymbolInterner();
+
+        // the first chunk to fail is the error the sequential tokenizer would report
+        for (Future<List<Token>> chunk : pool.invokeAll(tasks))
+        {
+            List<Token> tokens = getResult(chunk);
+            renumberSymbols(tokens, symbols);
+            tokenList.addAll(tokens);
+        }
+    }
+
+    public void printTokenList()
+    {
+        for (int i = 0; i < tokenList.size(); i++)
+        {
+            Token token = tokenList.get(i);
+            System.out.println(token.toString());
+        }
+    }
+
+    public List<Token> getTokens()
+    {
+        return tokenList;
+    }
+
+    // finds chunk boundaries at least chunkSize bytes apart. Returns the
+    // offsets of every chunk start followed by the end of the source
+    private List<Integer> findSplitPoints(int end, int chunkSize)
+    {
+        SplitScanner scanner = new SplitScanner(source);
+        List<Integer> splits = new ArrayList<Integer>();
+        int pos = 0;
+
+        splits.add(0);
+
+        while (pos < end)
+        {
+            pos = scanner.nextSplit(pos, end);
+
+            if (pos - splits.get(splits.size() - 1) >= chunkSize && pos < end)
+            {
+                splits.add(pos);
+            }
+        }
+
+        splits.add(end);
+        return splits;
+    }
+
+    // gives the identifiers of a chunk their IDs in the whole source, in the
+    // order they first appear
+    private void renumberSymbols(List<Token> tokens, SymbolInterner symbols)
+    {
+        int[] ids = new int[16];
+        Arrays.fill(ids, Token.NO_SYMBOL);
+
+        for (int i = 0; i < tokens.size(); i++)
+        {
+            Token token = tokens.get(i);
+            int localId = token.getSymbolId();
+
+            if (localId == Token.NO_SYMBOL)
+            {
+                continue;
+            }
+
+            if (localId >= ids.length)
+            {
+                int oldLength = ids.length;
+                ids = Arrays.copyOf(ids, Math.max(localId + 1, oldLength * 2));
+                Arrays.fill(ids, oldLength, ids.length, Token.NO_SYMBOL);
+            }
+
+            if (ids[localId] == Token.NO_SYMBOL)
+            {
+                ids[localId] = symbols.intern(token.getValue());
+            }
+
+            token.setSymbolId(ids[localId]);
+        }
+    }
+
+    private <T> T getResult(Future<T> future) throws TokenException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException exception)
+        {
+            // the pool can wrap the exception more than once
+            for (Throwable cause = exception.getCause(); cause != null; cause = cause.getCause())
+            {
+                if (cause instanceof TokenException)
+                {
+                    throw (TokenException) cause;
+                }
+            }
+
+            throw new IllegalStateException(exception.getCause());
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new TokenException("Tokenization was interrupted");
+        }
+    }
+}
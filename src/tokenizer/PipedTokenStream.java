@@ -0,0 +1,209 @@
+package tokenizer;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Token stream filled by a tokenizer on a thread of its own, so a source is
+// tokenized while the tokens before are being parsed. Tokens are handed over
+// in batches through a bounded queue, and the tokenizer waits whenever the
+// queue is full. An error of the tokenizer is thrown by the stream when it
+// gets to the token that could not be scanned, as the tokenizer would.
+public class PipedTokenStream implements TokenStream
+{
+    public static final int BATCH_SIZE = 1024;
+    public static final int QUEUE_CAPACITY = 16;
+
+    private Tokenizer tokenizer;
+    private BlockingQueue<Batch> queue;
+    private Thread thread;
+
+    // the batch being read, with any tokens of the next ones that were
+    // peeked at appended
+    private Token[] tokens;
+    private int count;
+    private int pos;
+    private boolean ended;
+    private Throwable error;
+
+    public PipedTokenStream(Tokenizer inTokenizer)
+    {
+        tokenizer = inTokenizer;
+        queue = new ArrayBlockingQueue<Batch>(QUEUE_CAPACITY);
+        thread = null;
+        tokens = new Token[0];
+        count = 0;
+        pos = 0;
+        ended = false;
+        error = null;
+    }
+
+    public void start()
+    {
+        thread = new Thread(this::tokenize, "tokenizer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // stops the tokenizer if it is still running
+    public void stop()
+    {
+        if (thread != null)
+        {
+            thread.interrupt();
+        }
+    }
+
+    public Token peek(int distance) throws TokenException
+    {
+        if (distance >= Tokenizer.MAX_LOOKAHEAD)
+        {
+            throw new TokenException("Cannot look more than " + Tokenizer.MAX_LOOKAHEAD + " tokens ahead");
+        }
+
+        while (pos + distance >= count)
+        {
+            if (!takeBatch())
+            {
+                return null;
+            }
+        }
+
+        return tokens[pos + distance];
+    }
+
+    public Token next() throws TokenException
+    {
+        Token token = peek(0);
+
+        if (token != null)
+        {
+            tokens[pos] = null;
+            pos++;
+        }
+
+        return token;
+    }
+
+    // adds the next batch after the tokens that are left. Returns false at
+    // the end of the tokens, or throws the tokenizer's error there
+    private boolean takeBatch() throws TokenException
+    {
+        if (ended)
+        {
+            if (error instanceof TokenException)
+            {
+                throw (TokenException) error;
+            }
+            else if (error instanceof Error)
+            {
+                throw (Error) error;
+            }
+            else if (error != null)
+            {
+                throw (RuntimeException) error;
+            }
+
+            return false;
+        }
+
+        Batch batch;
+
+        try
+        {
+            batch = queue.take();
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new TokenException("Tokenizing was interrupted");
+        }
+
+        if (batch.tokens == null)
+        {
+            ended = true;
+            error = batch.error;
+            return takeBatch();
+        }
+
+        // the tokens left are only ever the few being peeked at
+        int left = count - pos;
+        Token[] joined = left == 0 ? batch.tokens : Arrays.copyOf(Arrays.copyOfRange(tokens, pos, count), left + batch.count);
+
+        if (left > 0)
+        {
+            System.arraycopy(batch.tokens, 0, joined, left, batch.count);
+        }
+
+        tokens = joined;
+        count = left + batch.count;
+        pos = 0;
+        return true;
+    }
+
+    // runs on the tokenizer's thread until the source ends, an error is
+    // found or the stream is stopped
+    private void tokenize()
+    {
+        Token[] batch = new Token[BATCH_SIZE];
+        int batchCount = 0;
+
+        try
+        {
+            try
+            {
+                Token token;
+
+                while ((token = tokenizer.next()) != null)
+                {
+                    batch[batchCount] = token;
+                    batchCount++;
+
+                    if (batchCount == BATCH_SIZE)
+                    {
+                        queue.put(new Batch(batch, batchCount, null));
+                        batch = new Token[BATCH_SIZE];
+                        batchCount = 0;
+                    }
+                }
+
+                if (batchCount > 0)
+                {
+                    queue.put(new Batch(batch, batchCount, null));
+                }
+
+                queue.put(new Batch(null, 0, null));
+            }
+            catch (TokenException | RuntimeException | Error exception)
+            {
+                // anything the tokenizer throws is thrown again to the reader
+                if (batchCount > 0)
+                {
+                    queue.put(new Batch(batch, batchCount, null));
+                }
+
+                queue.put(new Batch(null, 0, exception));
+            }
+        }
+        catch (InterruptedException exception)
+        {
+            // the stream was stopped, nothing reads the queue any more
+        }
+    }
+
+    // tokens handed over at once. A batch without tokens ends the stream,
+    // with the tokenizer's error if it failed
+    private static class Batch
+    {
+        private Token[] tokens;
+        private int count;
+        private Throwable error;
+
+        Batch(Token[] inTokens, int inCount, Throwable inError)
+        {
+            tokens = inTokens;
+            count = inCount;
+            error = inError;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package tokenizer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Read-only view of UTF-8 source bytes. Files are memory-mapped rather than
+// read into the heap, and only the slices that become token values are decoded.
+// Decoding reuses a scratch array, so each thread needs its own duplicate().
+public class SourceBuffer
+{
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    private ByteBuffer bytes;
+    private int length;
+    private byte[] scratch;
+
+    public SourceBuffer(String text)
+    {
+        this(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public SourceBuffer(ByteBuffer inBytes)
+    {
+        // little endian, so the first byte of a word is its lowest byte
+        bytes = inBytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        length = inBytes.limit();
+        scratch = new byte[64];
+    }
+
+    public static SourceBuffer map(String filename) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ))
+        {
+            long size = channel.size();
+
+            if (size > Integer.MAX_VALUE)
+            {
+                throw new IOException("Source file is too large to map: " + filename);
+            }
+
+            // the mapping stays valid after the channel is closed
+            return new SourceBuffer(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    // returns a buffer over the same bytes with its own decoding state
+    public SourceBuffer duplicate()
+    {
+        return new SourceBuffer(bytes);
+    }
+
+    public int length()
+    {
+        return length;
+    }
+
+    public byte byteAt(int index)
+    {
+        return bytes.get(index);
+    }
+
+    // decodes the bytes in [start, end) into a String
+    public String decode(int start, int end)
+    {
+        int sliceLength = end - start;
+
+        if (bytes.hasArray())
+        {
+            return new String(bytes.array(), bytes.arrayOffset() + start, sliceLength, StandardCharsets.UTF_8);
+        }
+
+        if (scratch.length < sliceLength)
+        {
+            scratch = new byte[Math.max(sliceLength, scratch.length * 2)];
+        }
+
+        bytes.get(start, scratch, 0, sliceLength);
+        return new String(scratch, 0, sliceLength, StandardCharsets.UTF_8);
+    }
+
+    // returns the index of the first of the given bytes in [start, end), or
+    // end if there is none. Eight bytes are checked at a time, using the
+    // SWAR zero-byte test on the word XORed with each target
+    public int indexOfAny(int start, int end, byte a, byte b, byte c, byte d)
+    {
+        long patternA = (a & 0xFF) * ONES;
+        long patternB = (b & 0xFF) * ONES;
+        long patternC = (c & 0xFF) * ONES;
+        long patternD = (d & 0xFF) * ONES;
+        int i = start;
+
+        while (i + Long.BYTES <= end)
+        {
+            long word = bytes.getLong(i);
+            long found = zeroBytes(word ^ patternA) | zeroBytes(word ^ patternB) |
+                         zeroBytes(word ^ patternC) | zeroBytes(word ^ patternD);
+
+            if (found != 0)
+            {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+
+            i += Long.BYTES;
+        }
+
+        while (i < end)
+        {
+            byte current = bytes.get(i);
+
+            if (current == a || current == b || current == c || current == d)
+            {
+                return i;
+            }
+
+            i++;
+        }
+
+        return end;
+    }
+
+    // counts the UTF-8 characters in [start, end), which are all the bytes
+    // that are not continuation bytes (10xxxxxx)
+    public int countCharacters(int start, int end)
+    {
+        int count = 0;
+        int i = start;
+
+        while (i + Long.BYTES <= end)
+        {
+            long word = bytes.getLong(i);
+            long continuation = word & ~(word << 1) & HIGH_BITS;
+
+            count += Long.BYTES - Long.bitCount(continuation);
+            i += Long.BYTES;
+        }
+
+        while (i < end)
+        {
+            if ((bytes.get(i) & 0xC0) != 0x80)
+            {
+                count++;
+            }
+
+            i++;
+        }
+
+        return count;
+    }
+
+    // counts the occurrences of a byte in [start, end)
+    public int countByte(int start, int end, byte target)
+    {
+        long pattern = (target & 0xFF) * ONES;
+        int count = 0;
+        int i = start;
+
+        while (i + Long.BYTES <= end)
+        {
+            long word = bytes.getLong(i) ^ pattern;
+
+            // the high bit of a byte ends up clear only if the byte was zero
+            long nonZero = ((word & LOW_BITS) + LOW_BITS) | word | LOW_BITS;
+
+            count += Long.bitCount(~nonZero);
+            i += Long.BYTES;
+        }
+
+        while (i < end)
+        {
+            if (bytes.get(i) == target)
+            {
+                count++;
+            }
+
+            i++;
+        }
+
+        return count;
+    }
+
+    // sets the high bit of the lowest zero byte in the word. Bytes above it
+    // can be flagged falsely, so only the lowest set bit is meaningful
+    private static long zeroBytes(long word)
+    {
+        return (word - ONES) & ~word & HIGH_BITS;
+    }
+}
@@ -0,0 +1,11 @@
+package tokenizer;
+
+// Maps the offset of a token in its source to the line and column it is at.
+// Tokens keep one of these rather than their line and column, so positions
+// are only worked out for the tokens that are reported.
+public interface SourcePositions
+{
+    public int getLine(int offset);
+    public int getCol(int offset);
+    public String describe(int offset);
+}
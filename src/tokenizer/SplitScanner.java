@@ -0,0 +1,159 @@
+package tokenizer;
+
+// Finds the ';' characters of a source that end statements, which are the ones
+// outside of any literal or comment. A source can be cut right after any of
+// them and every piece still starts on a token boundary. This follows the same
+// literal and comment rules as the Tokenizer, but only looks at the characters
+// that can start or end one.
+public class SplitScanner
+{
+    private SourceBuffer source;
+
+    public SplitScanner(SourceBuffer inSource)
+    {
+        source = inSource;
+    }
+
+    // returns the offset right after the next statement-ending ';' in
+    // [pos, end), or end if there is none
+    public int nextSplit(int pos, int end)
+    {
+        while (pos < end)
+        {
+            int i = source.indexOfAny(pos, end, (byte) Tokenizer.SEMICOLON, (byte) Tokenizer.DOUBLE_QUOTE,
+                                      (byte) Tokenizer.SINGLE_QUOTE, (byte) Tokenizer.HASHTAG);
+
+            if (i == end)
+            {
+                break;
+            }
+
+            switch ((char) source.byteAt(i))
+            {
+                case Tokenizer.SEMICOLON:
+                return i + 1;
+
+                case Tokenizer.DOUBLE_QUOTE:
+                pos = skipStringLiteral(i + 1, end);
+                break;
+
+                case Tokenizer.SINGLE_QUOTE:
+                pos = skipCharLiteral(i + 1, end);
+                break;
+
+                default:
+                if (i + 1 < end && source.byteAt(i + 1) == Tokenizer.OPEN_BRACKET)
+                {
+                    pos = skipMultiLineComment(i + 2, end);
+                }
+                else
+                {
+                    pos = source.indexOfAny(i + 1, end, (byte) Tokenizer.ENDLINE, (byte) Tokenizer.ENDLINE,
+                                            (byte) Tokenizer.ENDLINE, (byte) Tokenizer.ENDLINE);
+                }
+                break;
+            }
+        }
+
+        return end;
+    }
+
+    // returns the offset after the closing quote, or end if there is none
+    private int skipStringLiteral(int pos, int end)
+    {
+        while (pos < end)
+        {
+            int i = source.indexOfAny(pos, end, (byte) Tokenizer.DOUBLE_QUOTE, (byte) Tokenizer.BACKSLASH,
+                                      (byte) Tokenizer.DOUBLE_QUOTE, (byte) Tokenizer.BACKSLASH);
+
+            if (i == end || source.byteAt(i) == Tokenizer.DOUBLE_QUOTE)
+            {
+                return Math.min(i + 1, end);
+            }
+
+            // skip the escaped character
+            pos = i + 2;
+        }
+
+        return end;
+    }
+
+    private int skipCharLiteral(int pos, int end)
+    {
+        if (pos >= end)
+        {
+            return end;
+        }
+
+        int lead = source.byteAt(pos) & 0xFF;
+
+        if (lead == Tokenizer.BACKSLASH)
+        {
+            pos += 2;
+        }
+        else if ((lead & 0xE0) == 0xC0)
+        {
+            pos += 2;
+        }
+        else if ((lead & 0xF0) == 0xE0)
+        {
+            pos += 3;
+        }
+        else if ((lead & 0xF8) == 0xF0)
+        {
+            pos += 4;
+        }
+        else
+        {
+            pos++;
+        }
+
+        if (pos < end && source.byteAt(pos) == Tokenizer.SINGLE_QUOTE)
+        {
+            pos++;
+        }
+
+        return Math.min(pos, end);
+    }
+
+    private int skipMultiLineComment(int pos, int end)
+    {
+        int depth = 1;
+
+        while (pos < end)
+        {
+            int i = source.indexOfAny(pos, end, (byte) Tokenizer.CLOSE_BRACKET, (byte) Tokenizer.HASHTAG,
+                                      (byte) Tokenizer.CLOSE_BRACKET, (byte) Tokenizer.HASHTAG);
+
+            if (i + 1 >= end)
+            {
+                return end;
+            }
+
+            byte next = source.byteAt(i + 1);
+
+            if (source.byteAt(i) == Tokenizer.CLOSE_BRACKET && next == Tokenizer.HASHTAG)
+            {
+                depth--;
+
+                if (depth == 0)
+                {
+                    return i + 2;
+                }
+
+                pos = i + 2;
+            }
+            else if (source.byteAt(i) == Tokenizer.HASHTAG && next == Tokenizer.OPEN_BRACKET)
+            {
+                depth++;
+                pos = i + 2;
+            }
+            else
+            {
+                pos = i + 1;
+            }
+        }
+
+        return end;
+    }
+}
@@ -0,0 +1,47 @@
+package tokenizer;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// Gives every distinct identifier a dense integer ID, starting at 0, so that
+// later stages can index arrays by ID instead of hashing names. Lookups of
+// known identifiers take no lock, so chunks tokenized in parallel can share one.
+public class SymbolInterner
+{
+    private ConcurrentHashMap<String, Integer> ids;
+    private int nextId;
+
+    public SymbolInterner()
+    {
+        ids = new ConcurrentHashMap<String, Integer>();
+        nextId = 0;
+    }
+
+    public int intern(String identifier)
+    {
+        Integer id = ids.get(identifier);
+
+        if (id != null)
+        {
+            return id;
+        }
+
+        synchronized (this)
+        {
+            id = ids.get(identifier);
+
+            if (id == null)
+            {
+                id = nextId;
+                ids.put(identifier, id);
+                nextId++;
+            }
+
+            return id;
+        }
+    }
+
+    public synchronized int size()
+    {
+        return nextId;
+    }
+}
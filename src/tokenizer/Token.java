@@ -4,15 +4,24 @@ public class Token
 {
     private TokenType type;
     private String value;
-    private int line;
-    private int col;
+    private int offset;
+    private int symbolId;
+    private SourcePositions lines;
 
-    public Token(TokenType type, String value, int line, int col) 
+    public static final int NO_SYMBOL = -1;
+
+    public Token(TokenType type, String value, int offset, SourcePositions lines) 
+    {
+        this(type, value, offset, NO_SYMBOL, lines);
+    }
+
+    public Token(TokenType type, String value, int offset, int symbolId, SourcePositions lines) 
     {
         this.type = type;
         this.value = value;
-        this.line = line;
-        this.col = col;
+        this.offset = offset;
+        this.symbolId = symbolId;
+        this.lines = lines;
     }
 
     public TokenType getType() 
@@ -25,18 +34,36 @@ public class Token
         return value;
     }
 
+    public int getOffset()
+    {
+        return offset;
+    }
+
+    // the interned ID of an identifier, or NO_SYMBOL for any other token
+    public int getSymbolId()
+    {
+        return symbolId;
+    }
+
+    // for tokens whose identifier was interned apart from the rest of the
+    // source
+    void setSymbolId(int inSymbolId)
+    {
+        symbolId = inSymbolId;
+    }
+
     public int getLine() 
     {
-        return line;
+        return lines.getLine(offset);
     }
 
     public int getCol()
     {
-        return col;
+        return lines.getCol(offset);
     }
 
     public String toString()
     {
-        return type + ", " + value + " (line " + line + ", col " + col + ")";
+        return type + ", " + value + " (" + lines.describe(offset) + ")";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,9 @@
+package tokenizer;
+
+// A source of tokens that is pulled from one token at a time, with a small
+// bounded lookahead. peek and next return null once the tokens run out.
+public interface TokenStream 
+{
+    public Token peek(int distance) throws TokenException;
+    public Token next() throws TokenException;
+}
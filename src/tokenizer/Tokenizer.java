@@ -2,13 +2,28 @@ package tokenizer;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 
-public class Tokenizer {
+public class Tokenizer implements TokenStream {
     private List<Token> tokenList = new ArrayList<Token>();
-    private String str;
+    private SourceBuffer source;
+    private int sourceStart;
+    private int sourceEnd;
     private int strPos;
-    private int currentLine;
-    private int currentCol;
+    private SourcePositions lines;
+    private SymbolInterner symbols;
+
+    // the most recently scanned token, kept as a type and a source range so
+    // that its value is only built if a Token is actually needed
+    private TokenType scanType;
+    private int scanStart;
+
+    // tokens scanned ahead of the stream position, as a ring buffer
+    private Token[] lookahead = new Token[MAX_LOOKAHEAD];
+    private int lookaheadStart;
+    private int lookaheadCount;
+
+    public static final int MAX_LOOKAHEAD = 4;
 
     public static final char NULL_CHAR = '\0';
     public static final char UNDERSCORE = '_';
@@ -31,6 +46,8 @@ public class Tokenizer {
     public static final char SEMICOLON = ';';
     public static final char ENDLINE = '\n';
     public static final char TAB = '\t';
+    public static final char ASCII_LIMIT = 0x80;
+    public static final char UTF8_CONTINUATION = 0x80;
 
     public static final String EXIT = "exit";
     public static final String PRINT = "print";
@@ -39,108 +56,304 @@ public class Tokenizer {
     public static final String TYPE_CHAR = "char";
     public static final String TYPE_STRING = "str";
 
+    // classes of ASCII characters, anything above ASCII is CLASS_NON_ASCII
+    private static final int CLASS_OTHER = 0;
+    private static final int CLASS_LETTER = 1;
+    private static final int CLASS_DIGIT = 2;
+    private static final int CLASS_DOT = 3;
+    private static final int CLASS_NON_ASCII = 4;
+    private static final int CLASS_WHITESPACE = 5;
+    private static final int CLASS_SYMBOL = 6;
+    private static final int CLASS_SINGLE_QUOTE = 7;
+    private static final int CLASS_DOUBLE_QUOTE = 8;
+    private static final int CLASS_HASHTAG = 9;
+    private static final int CLASS_END = 10;
+    private static final int CLASS_COUNT = 11;
+
+    // states of the word DFA. A word is classified as it is scanned, and
+    // WORD_END means the current character is not part of the word
+    private static final int WORD_END = -1;
+    private static final int WORD_START = 0;
+    private static final int WORD_IDENTIFIER = 1;
+    private static final int WORD_INT = 2;
+    private static final int WORD_FLOAT = 3;
+    private static final int WORD_FLOAT_DOT = 4;
+    private static final int WORD_INVALID = 5;
+    private static final int WORD_NON_ASCII = 6;
+
+    // keywords are looked up by (first character + length) & KEYWORD_MASK,
+    // which gives every keyword its own slot
+    private static final int KEYWORD_MASK = 7;
+
+    private static final byte[] CHAR_CLASSES = new byte[ASCII_LIMIT];
+    private static final TokenType[] SYMBOL_TYPES = new TokenType[ASCII_LIMIT];
+    private static final int[][] WORD_TRANSITIONS = new int[WORD_NON_ASCII + 1][CLASS_COUNT];
+    private static final String[] KEYWORDS = new String[KEYWORD_MASK + 1];
+    private static final TokenType[] KEYWORD_TYPES = new TokenType[KEYWORD_MASK + 1];
+
+    static
+    {
+        for (char c = 0; c < ASCII_LIMIT; c++)
+        {
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == UNDERSCORE)
+            {
+                CHAR_CLASSES[c] = CLASS_LETTER;
+            }
+            else if (c >= '0' && c <= '9')
+            {
+                CHAR_CLASSES[c] = CLASS_DIGIT;
+            }
+            else if (Character.isWhitespace(c))
+            {
+                CHAR_CLASSES[c] = CLASS_WHITESPACE;
+            }
+            else
+            {
+                CHAR_CLASSES[c] = CLASS_OTHER;
+            }
+        }
+
+        CHAR_CLASSES[DOT] = CLASS_DOT;
+        CHAR_CLASSES[SINGLE_QUOTE] = CLASS_SINGLE_QUOTE;
+        CHAR_CLASSES[DOUBLE_QUOTE] = CLASS_DOUBLE_QUOTE;
+        CHAR_CLASSES[HASHTAG] = CLASS_HASHTAG;
+        CHAR_CLASSES[NULL_CHAR] = CLASS_END;
+
+        addSymbol(PLUS, TokenType.PLUS);
+        addSymbol(MINUS, TokenType.MINUS);
+        addSymbol(TIMES, TokenType.TIMES);
+        addSymbol(DIVISION, TokenType.DIVISION);
+        addSymbol(MOD, TokenType.MOD);
+        addSymbol(EQUALS, TokenType.EQUALS);
+        addSymbol(OPEN_PAREN, TokenType.OPEN_PAREN);
+        addSymbol(CLOSE_PAREN, TokenType.CLOSE_PAREN);
+        addSymbol(SEMICOLON, TokenType.SEMICOLON);
+
+        // every character class outside of a word ends it
+        for (int[] row : WORD_TRANSITIONS)
+        {
+            Arrays.fill(row, WORD_END);
+        }
+
+        setWordTransitions(WORD_START, WORD_IDENTIFIER, WORD_INT, WORD_FLOAT_DOT);
+        setWordTransitions(WORD_IDENTIFIER, WORD_IDENTIFIER, WORD_INVALID, WORD_INVALID);
+        setWordTransitions(WORD_INT, WORD_INVALID, WORD_INT, WORD_FLOAT_DOT);
+        setWordTransitions(WORD_FLOAT, WORD_INVALID, WORD_FLOAT, WORD_FLOAT_DOT);
+        setWordTransitions(WORD_FLOAT_DOT, WORD_INVALID, WORD_FLOAT, WORD_FLOAT_DOT);
+        setWordTransitions(WORD_INVALID, WORD_INVALID, WORD_INVALID, WORD_INVALID);
+        setWordTransitions(WORD_NON_ASCII, WORD_NON_ASCII, WORD_NON_ASCII, WORD_NON_ASCII);
+
+        // non-ASCII words are classified as Strings once they end, unless
+        // they can already never be valid
+        WORD_TRANSITIONS[WORD_INVALID][CLASS_NON_ASCII] = WORD_INVALID;
+
+        addKeyword(EXIT, TokenType.EXIT);
+        addKeyword(PRINT, TokenType.PRINT);
+        addKeyword(TYPE_INT, TokenType.TYPE);
+        addKeyword(TYPE_FLOAT, TokenType.TYPE);
+        addKeyword(TYPE_CHAR, TokenType.TYPE);
+        addKeyword(TYPE_STRING, TokenType.TYPE);
+    }
+
+    private static void addSymbol(char symbol, TokenType type)
+    {
+        CHAR_CLASSES[symbol] = CLASS_SYMBOL;
+        SYMBOL_TYPES[symbol] = type;
+    }
+
+    // sets where a word state goes on a letter, digit or dot. Any other
+    // character that can be in a word makes it invalid
+    private static void setWordTransitions(int state, int letter, int digit, int dot)
+    {
+        WORD_TRANSITIONS[state][CLASS_LETTER] = letter;
+        WORD_TRANSITIONS[state][CLASS_DIGIT] = digit;
+        WORD_TRANSITIONS[state][CLASS_DOT] = dot;
+        WORD_TRANSITIONS[state][CLASS_OTHER] = WORD_INVALID;
+        WORD_TRANSITIONS[state][CLASS_NON_ASCII] = WORD_NON_ASCII;
+    }
+
+    private static void addKeyword(String keyword, TokenType type)
+    {
+        int slot = getKeywordSlot(keyword.charAt(0), keyword.length());
+
+        if (KEYWORDS[slot] != null)
+        {
+            throw new IllegalStateException("Keywords '" + KEYWORDS[slot] + "' and '" + keyword + "' share a hash slot");
+        }
+
+        KEYWORDS[slot] = keyword;
+        KEYWORD_TYPES[slot] = type;
+    }
+
+    private static int getKeywordSlot(char first, int length)
+    {
+        return (first + length) & KEYWORD_MASK;
+    }
+
     public Tokenizer(String inStr)
     {
-        this.str = inStr;
+        this(new SourceBuffer(inStr));
     }
 
+    public Tokenizer(SourceBuffer inSource)
+    {
+        this(inSource, 0, inSource.length(), new LineIndex(inSource), new SymbolInterner());
+    }
+
+    // tokenizer for the part of a source in [start, end). Token positions
+    // and identifier IDs are shared with the rest of the source
+    public Tokenizer(SourceBuffer inSource, int start, int end, SourcePositions inLines, SymbolInterner inSymbols)
+    {
+        this.source = inSource;
+        this.sourceStart = start;
+        this.sourceEnd = end;
+        this.lines = inLines;
+        this.symbols = inSymbols;
+        reset();
+    }
+
+    // tokenizes the whole source into the token list
     public void tokenize() throws TokenException
     {
+        Token token;
+
         tokenList.clear();
-        strPos = 0;
-        currentLine = 1;
-        currentCol = 1;
-        
-        String buffer = "";
-        
-        while (peek() != NULL_CHAR)
+        reset();
+
+        while ((token = scanToken()) != null)
+        {
+            tokenList.add(token);
+        }
+    }
+
+    // returns the token the given distance ahead of the stream position, scanning
+    // only as far as needed, or null if the source ends before it
+    public Token peek(int distance) throws TokenException
+    {
+        if (distance >= MAX_LOOKAHEAD)
+        {
+            throw new TokenException("Cannot look more than " + MAX_LOOKAHEAD + " tokens ahead");
+        }
+
+        while (lookaheadCount <= distance)
         {
-            switch (peek())
+            Token token = scanToken();
+
+            if (token == null)
             {
-                // single-character tokens that would end any current token
-                case PLUS:
-                case MINUS:
-                case TIMES:
-                case DIVISION:
-                case MOD:
-                case EQUALS:
-                case OPEN_PAREN:
-                case CLOSE_PAREN:
-                case SEMICOLON:
-                // if something was already read, tokenize it
-                if (buffer.length() > 0)
-                {
-                    tokenList.add(getTokenFromString(buffer));
-                    buffer = "";
-                }
+                return null;
+            }
 
-                // also tokenize the current single-character token
-                tokenList.add(getTokenFromString("" + consume()));
-                break;
+            lookahead[(lookaheadStart + lookaheadCount) % MAX_LOOKAHEAD] = token;
+            lookaheadCount++;
+        }
 
-                // tokenize character literal
-                case SINGLE_QUOTE:
-                if (buffer.length() > 0)
-                {
-                    tokenList.add(getTokenFromString(buffer));
-                    buffer = "";
-                }
+        return lookahead[(lookaheadStart + distance) % MAX_LOOKAHEAD];
+    }
+
+    public Token next() throws TokenException
+    {
+        Token token = peek(0);
+
+        if (token != null)
+        {
+            lookahead[lookaheadStart] = null;
+            lookaheadStart = (lookaheadStart + 1) % MAX_LOOKAHEAD;
+            lookaheadCount--;
+        }
 
-                int quoteLine = currentLine;
-                int quoteCol = currentCol;
+        return token;
+    }
 
+    private void reset()
+    {
+        strPos = sourceStart;
+        lookaheadStart = 0;
+        lookaheadCount = 0;
+    }
+
+    // tokenizes the whole source into a packed buffer, without creating
+    // Token objects or token values
+    public PackedTokenBuffer tokenizePacked() throws TokenException
+    {
+        PackedTokenBuffer buffer = new PackedTokenBuffer(this);
+
+        reset();
+
+        while (scanNext())
+        {
+            buffer.add(scanType, scanStart, strPos - scanStart);
+        }
+
+        return buffer;
+    }
+
+    private Token scanToken() throws TokenException
+    {
+        if (scanNext())
+        {
+            return createToken(scanType, scanStart, strPos - scanStart);
+        }
+
+        return null;
+    }
+
+    // scans past whitespace and comments to the end of the next token, and
+    // records its type and start. Returns false once the end of the source is reached
+    private boolean scanNext() throws TokenException
+    {
+        while (peek() != NULL_CHAR)
+        {
+            scanStart = strPos;
+
+            switch (getCharClass(peek()))
+            {
+                // single-character tokens
+                case CLASS_SYMBOL:
+                scanType = SYMBOL_TYPES[consume()];
+                return true;
+
+                // tokenize character literal
+                case CLASS_SINGLE_QUOTE:
                 consume();
-                
-                char literalValue = consumeCharacter();
+                consumeCharacter();
 
                 // check for closing quote
                 if (peek() == SINGLE_QUOTE)
                 {
                     consume();
-                    tokenList.add(new Token(TokenType.LITERAL_CHAR, "" + literalValue, quoteLine, quoteCol));
+                    scanType = TokenType.LITERAL_CHAR;
+                    return true;
                 }
                 else
                 {
-                    throw new TokenException("No single quote found to close the one at line " + quoteLine + ", col " + quoteCol);
-                }
-                break;
-
-                case DOUBLE_QUOTE:
-                if (buffer.length() > 0)
-                {
-                    tokenList.add(getTokenFromString(buffer));
-                    buffer = "";
+                    throw new TokenException("No single quote found to close the one at " + lines.describe(scanStart));
                 }
 
-                int dQuoteLine = currentLine;
-                int dQuoteCol = currentCol;
-                String stringLiteral = "";
-
+                case CLASS_DOUBLE_QUOTE:
                 consume();
 
                 while (peek() != NULL_CHAR && peek() != DOUBLE_QUOTE)
                 {
-                    stringLiteral += consumeCharacter();
+                    skipUntil(DOUBLE_QUOTE, BACKSLASH);
+
+                    if (peek() == BACKSLASH)
+                    {
+                        consumeCharacter();
+                    }
                 }
 
                 if (peek() == NULL_CHAR)
                 {
-                    throw new TokenException("No double quote found to close the one at line " + dQuoteLine + ", col " + dQuoteCol);
+                    throw new TokenException("No double quote found to close the one at " + lines.describe(scanStart));
                 }
 
                 consume();
-                tokenList.add(new Token(TokenType.LITERAL_STR, "" + stringLiteral, dQuoteLine, dQuoteCol));
-                break;
+                scanType = TokenType.LITERAL_STR;
+                return true;
 
                 // handle comments
-                case HASHTAG:
-                // if something was already read, tokenize it
-                if (buffer.length() > 0)
-                {
-                    tokenList.add(getTokenFromString(buffer));
-                    buffer = "";
-                }
-
+                case CLASS_HASHTAG:
                 consume();
 
                 // handle multi-line comment
@@ -152,43 +365,91 @@ public class Tokenizer {
                 // handle single-line comment
                 else
                 {
-                    while (peek() != NULL_CHAR && consume() != ENDLINE) {}
+                    skipUntil(ENDLINE, ENDLINE);
+
+                    if (peek() == ENDLINE)
+                    {
+                        consume();
+                    }
                 }
 
                 break;
 
-                // handle everything else
+                case CLASS_WHITESPACE:
+                consume();
+                break;
+
+                // handle words, which are classified as they are scanned
                 default:
+                int state = WORD_START;
+                int next;
 
-                // handle whitespace
-                if (Character.isWhitespace(peek()))
+                while ((next = WORD_TRANSITIONS[state][getCharClass(peek())]) != WORD_END)
                 {
-                    // if something was already read, tokenize it
-                    if (buffer.length() > 0)
-                    {
-                        tokenList.add(getTokenFromString(buffer));
-                        buffer = "";
-                    }
-                    
-                    // consume current whitespace character
+                    state = next;
                     consume();
                 }
-                // handle non-whitespace
-                else 
-                {
-                    // just keep reading
-                    buffer += consume();
-                }
-            }   
+
+                scanType = getWordType(state, scanStart, strPos);
+                return true;
+            }
         }
+
+        return false;
     }
 
-    // consumes characters until "]#" is found, but if another "#["
-    // is found, recursively calls itself to consume that properly as well
+    // builds the token in the given source range, interning identifiers
+    Token createToken(TokenType type, int offset, int length)
+    {
+        String value = getTokenValue(type, offset, length);
+
+        if (type == TokenType.IDENTIFIER)
+        {
+            return new Token(type, value, offset, symbols.intern(value), lines);
+        }
+
+        return new Token(type, value, offset, lines);
+    }
+
+    // builds the value of the token in the given source range. Only literals
+    // and identifiers need to be decoded, every other token has a fixed value
+    String getTokenValue(TokenType type, int offset, int length)
+    {
+        switch (type)
+        {
+            case IDENTIFIER:
+            case LITERAL_INT:
+            case LITERAL_FLOAT:
+            return source.decode(offset, offset + length);
+
+            case LITERAL_CHAR:
+            case LITERAL_STR:
+            return decodeLiteral(offset + 1, offset + length - 1);
+
+            case TYPE:
+            return getTypeValue((char) source.byteAt(offset));
+
+            case EXIT:
+            return EXIT;
+
+            case PRINT:
+            return PRINT;
+
+            default:
+            return getSymbolValue((char) source.byteAt(offset));
+        }
+    }
+
+    // consumes characters until the "]#" that closes the current comment is
+    // found, counting the depth of nested "#[" comments along the way
     public void consumeMultiLineComment() throws TokenException
     {
+        int depth = 1;
+
         while (peek() != NULL_CHAR)
         {
+            skipUntil(CLOSE_BRACKET, HASHTAG);
+
             if (peek() == CLOSE_BRACKET)
             {
                 consume();
@@ -196,7 +457,12 @@ public class Tokenizer {
                 if (peek() == HASHTAG)
                 {
                     consume();
-                    return;
+                    depth--;
+
+                    if (depth == 0)
+                    {
+                        return;
+                    }
                 }
             }
             else if (peek() == HASHTAG)
@@ -206,52 +472,154 @@ public class Tokenizer {
                 if (peek() == OPEN_BRACKET)
                 {
                     consume();
-                    consumeMultiLineComment();
+                    depth++;
                 }
             }
-            else
-            {
-                consume();
-            }
         }
 
         throw new TokenException("Could not find the end of multi-line comment");
     }
 
+    // skips ahead until one of the given characters or the end of the source is next
+    private void skipUntil(char first, char second)
+    {
+        strPos = source.indexOfAny(strPos, sourceEnd, (byte) first, (byte) second, (byte) NULL_CHAR, (byte) NULL_CHAR);
+    }
+
     public char consumeCharacter() throws TokenException
     {
+        if (peek() >= ASCII_LIMIT)
+        {
+            int codePoint = consumeCodePoint();
+
+            if (codePoint > Character.MAX_VALUE)
+            {
+                throw new TokenException("Character does not fit in a single char: U+" + Integer.toHexString(codePoint).toUpperCase());
+            }
+
+            return (char) codePoint;
+        }
+
         char literalValue = consume();
         char next = peek();
 
         // check for escape sequences
         if (literalValue == BACKSLASH)
         {
-            switch (next)
+            int escapeValue = getEscapeValue(next);
+
+            if (escapeValue == -1)
             {
-                case 'n':
-                consume();
-                return ENDLINE;
+                throw new TokenException("Unknown escape sequence: \\" + next);
+            }
 
-                case 't':
-                consume();
-                return TAB;
+            consume();
+            return (char) escapeValue;
+        }
 
-                case '0':
-                consume();
-                return NULL_CHAR;
+        return literalValue;
+    }
 
-                case SINGLE_QUOTE:
-                case DOUBLE_QUOTE:
-                case BACKSLASH:
-                consume();
-                return next;
+    // returns the character an escape sequence stands for, or -1 if unknown
+    private int getEscapeValue(char next)
+    {
+        switch (next)
+        {
+            case 'n':
+            return ENDLINE;
 
-                default:
-                throw new TokenException("Unknown escape sequence: \\" + next);
+            case 't':
+            return TAB;
+
+            case '0':
+            return NULL_CHAR;
+
+            case SINGLE_QUOTE:
+            case DOUBLE_QUOTE:
+            case BACKSLASH:
+            return next;
+
+            default:
+            return -1;
+        }
+    }
+
+    // consumes one UTF-8 encoded character and returns its code point
+    private int consumeCodePoint() throws TokenException
+    {
+        int lead = consume();
+        int continuationBytes;
+        int codePoint;
+
+        if (lead < ASCII_LIMIT)
+        {
+            return lead;
+        }
+        else if ((lead & 0xE0) == 0xC0)
+        {
+            continuationBytes = 1;
+            codePoint = lead & 0x1F;
+        }
+        else if ((lead & 0xF0) == 0xE0)
+        {
+            continuationBytes = 2;
+            codePoint = lead & 0x0F;
+        }
+        else if ((lead & 0xF8) == 0xF0)
+        {
+            continuationBytes = 3;
+            codePoint = lead & 0x07;
+        }
+        else
+        {
+            throw new TokenException("Malformed UTF-8 at " + lines.describe(strPos));
+        }
+
+        for (int i = 0; i < continuationBytes; i++)
+        {
+            if ((peek() & 0xC0) != UTF8_CONTINUATION)
+            {
+                throw new TokenException("Malformed UTF-8 at " + lines.describe(strPos));
             }
+
+            codePoint = (codePoint << 6) | (consume() & 0x3F);
         }
 
-        return literalValue;
+        return codePoint;
+    }
+
+    // decodes the body of a character or string literal. The raw body is
+    // decoded once, and only copied again if it contains escape sequences,
+    // which were already validated when the literal was scanned
+    private String decodeLiteral(int start, int end)
+    {
+        String raw = source.decode(start, end);
+        int escapeIndex = raw.indexOf(BACKSLASH);
+
+        if (escapeIndex == -1)
+        {
+            return raw;
+        }
+
+        StringBuilder builder = new StringBuilder(raw.length());
+        builder.append(raw, 0, escapeIndex);
+
+        for (int i = escapeIndex; i < raw.length(); i++)
+        {
+            char c = raw.charAt(i);
+
+            if (c == BACKSLASH)
+            {
+                i++;
+                builder.append((char) getEscapeValue(raw.charAt(i)));
+            }
+            else
+            {
+                builder.append(c);
+            }
+        }
+
+        return builder.toString();
     }
 
     public void printTokenList()
@@ -268,11 +636,23 @@ public class Tokenizer {
         return tokenList;
     }
 
+    SourcePositions getPositions()
+    {
+        return lines;
+    }
+
+    public SymbolInterner getSymbols()
+    {
+        return symbols;
+    }
+
+    // source bytes are returned as chars in the range 0-255, so anything
+    // at or above ASCII_LIMIT is part of a multi-byte character
     private char peek()
     {
-        if (strPos < str.length())
+        if (strPos < sourceEnd)
         {
-            return str.charAt(strPos);
+            return (char) (source.byteAt(strPos) & 0xFF);
         }
 
         return NULL_CHAR;
@@ -280,97 +660,142 @@ public class Tokenizer {
 
     private char consume()
     {
-        if (strPos < str.length())
+        if (strPos < sourceEnd)
         {
-            char returnChar = str.charAt(strPos);
+            char returnChar = (char) (source.byteAt(strPos) & 0xFF);
             strPos++;
-
-            if (returnChar == ENDLINE)
-            {
-                currentLine++;
-                currentCol = 1;
-            }
-            else
-            {
-                currentCol++;
-            }
-
             return returnChar;
         }
 
         return NULL_CHAR;
     }
 
-    private Token getTokenFromString(String test) throws TokenException
+    private int getCharClass(char c)
     {
-        // Test single character tokens
-        switch (test.charAt(0))
+        if (c < ASCII_LIMIT)
+        {
+            return CHAR_CLASSES[c];
+        }
+
+        return CLASS_NON_ASCII;
+    }
+
+    private String getSymbolValue(char symbol)
+    {
+        switch (symbol)
         {
             case PLUS:
-            return new Token(TokenType.PLUS, test, currentLine, currentCol);
+            return "+";
 
             case MINUS:
-            return new Token(TokenType.MINUS, test, currentLine, currentCol);
+            return "-";
 
             case TIMES:
-            return new Token(TokenType.TIMES, test, currentLine, currentCol);
+            return "*";
 
             case DIVISION:
-            return new Token(TokenType.DIVISION, test, currentLine, currentCol);
+            return "/";
 
             case MOD:
-            return new Token(TokenType.MOD, test, currentLine, currentCol);
+            return "%";
 
             case OPEN_PAREN:
-            return new Token(TokenType.OPEN_PAREN, test, currentLine, currentCol);
+            return "(";
 
             case CLOSE_PAREN:
-            return new Token(TokenType.CLOSE_PAREN, test, currentLine, currentCol);
-
-            case SINGLE_QUOTE:
-            return new Token(TokenType.SINGLE_QUOTE, test, currentLine, currentCol);
+            return ")";
 
             case EQUALS:
-            return new Token(TokenType.EQUALS, test, currentLine, currentCol);
+            return "=";
 
-            case SEMICOLON:
-            return new Token(TokenType.SEMICOLON, test, currentLine, currentCol);
+            default:
+            return ";";
+        }
+    }
+
+    private String getTypeValue(char first)
+    {
+        switch (first)
+        {
+            case 'i':
+            return TYPE_INT;
+
+            case 'f':
+            return TYPE_FLOAT;
+
+            case 'c':
+            return TYPE_CHAR;
 
             default:
-            // Test multi-character strings
-            switch (test)
+            return TYPE_STRING;
+        }
+    }
+
+    // gets the token type of a word from the state the word DFA ended in
+    private TokenType getWordType(int state, int start, int end) throws TokenException
+    {
+        switch (state)
+        {
+            case WORD_IDENTIFIER:
+            int slot = getKeywordSlot((char) source.byteAt(start), end - start);
+
+            if (KEYWORDS[slot] != null && wordEquals(start, end, KEYWORDS[slot]))
             {
-                case EXIT:
-                return new Token(TokenType.EXIT, test, currentLine, currentCol - test.length());
+                return KEYWORD_TYPES[slot];
+            }
 
-                case PRINT:
-                return new Token(TokenType.PRINT, test, currentLine, currentCol - test.length());
+            return TokenType.IDENTIFIER;
 
-                case TYPE_INT:
-                case TYPE_FLOAT:
-                case TYPE_CHAR:
-                case TYPE_STRING:
-                return new Token(TokenType.TYPE, test, currentLine, currentCol - test.length());
+            case WORD_INT:
+            return TokenType.LITERAL_INT;
 
-                default:
-                if (isIdentifier(test))
-                {
-                    return new Token(TokenType.IDENTIFIER, test, currentLine, currentCol - test.length());
-                }
+            case WORD_FLOAT:
+            return TokenType.LITERAL_FLOAT;
 
-                if (isIntLiteral(test))
-                {
-                    return new Token(TokenType.LITERAL_INT, test, currentLine, currentCol - test.length());
-                }
+            case WORD_NON_ASCII:
+            return getWordType(source.decode(start, end));
 
-                if (isFloatLiteral(test))
-                {
-                    return new Token(TokenType.LITERAL_FLOAT, test, currentLine, currentCol - test.length());
-                }
-            }
+            default:
+            throw new TokenException("'" + source.decode(start, end) + "' is not a valid token.");
+        }
+    }
 
-            throw new TokenException("'" + test + "' is not a valid token.");
+    private TokenType getWordType(String test) throws TokenException
+    {
+        if (isIdentifier(test))
+        {
+            return TokenType.IDENTIFIER;
+        }
+
+        if (isIntLiteral(test))
+        {
+            return TokenType.LITERAL_INT;
         }
+
+        if (isFloatLiteral(test))
+        {
+            return TokenType.LITERAL_FLOAT;
+        }
+
+        throw new TokenException("'" + test + "' is not a valid token.");
+    }
+
+    private boolean wordEquals(int start, int end, String keyword)
+    {
+        if (end - start != keyword.length())
+        {
+            return false;
+        }
+
+        for (int i = 0; i < keyword.length(); i++)
+        {
+            if (source.byteAt(start + i) != keyword.charAt(i))
+            {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     private boolean isIdentifier(String test)